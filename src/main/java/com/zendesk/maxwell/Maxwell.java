@@ -8,6 +8,7 @@ import com.zendesk.maxwell.recovery.RecoveryInfo;
 import com.zendesk.maxwell.replication.BinlogConnectorReplicator;
 import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.replication.Replicator;
+import com.zendesk.maxwell.replication.ReplicatorConfig;
 import com.zendesk.maxwell.row.HeartbeatRowMap;
 import com.zendesk.maxwell.schema.MysqlPositionStore;
 import com.zendesk.maxwell.schema.MysqlSchemaStore;
@@ -165,7 +166,7 @@ public class Maxwell implements Runnable {
 	protected void onReplicatorStart() {}
 	protected void onReplicatorEnd() {}
 
-	private void start() throws Exception {
+	public void start() throws Exception {
 		try {
 			startInner();
 		} catch ( Exception e) {
@@ -216,6 +217,17 @@ public class Maxwell implements Runnable {
 		}
 
 		mysqlSchemaStore.getSchema(); // trigger schema to load / capture before we start the replicator.
+
+		ReplicatorConfig replicatorConfig = new ReplicatorConfig();
+		replicatorConfig.rowConversionThreads = config.rowConversionThreads;
+		replicatorConfig.rowConversionChunkSize = config.rowConversionChunkSize;
+		replicatorConfig.rowConversionPool = config.rowConversionPool;
+		replicatorConfig.streamTransactions = config.streamTransactions;
+		replicatorConfig.binlogEventQueueSize = config.binlogEventQueueSize;
+		replicatorConfig.binlogEventQueueMaxBytes = config.binlogEventQueueMaxBytes;
+		replicatorConfig.bufferConfig = config.bufferConfig;
+		replicatorConfig.catchUpMode = context.getCatchUpMode();
+
 		/**
 		 *  设置监控binlog日志对象参数
 		 */
@@ -231,7 +243,8 @@ public class Maxwell implements Runnable {
 			false,
 			config.clientID,
 			context.getHeartbeatNotifier(),
-			config.scripting
+			config.scripting,
+			replicatorConfig
 		);
 
 		bootstrapper.resume(producer, replicator);
@@ -253,6 +266,21 @@ public class Maxwell implements Runnable {
 			if ( config.log_level != null )
 				Logging.setLevel(config.log_level);
 
+			if ( config.sourceConfigs != null ) {
+				final MaxwellMultiSource multiSource = new MaxwellMultiSource(config);
+
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						multiSource.terminate();
+						StaticShutdownCallbackRegistry.invoke();
+					}
+				});
+
+				multiSource.start();
+				return;
+			}
+
 			final Maxwell maxwell = new Maxwell(config);
 
 			Runtime.getRuntime().addShutdownHook(new Thread() {
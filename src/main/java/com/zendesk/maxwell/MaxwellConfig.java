@@ -6,11 +6,14 @@ import com.github.shyiko.mysql.binlog.network.SSLMode;
 import com.zendesk.maxwell.filtering.Filter;
 import com.zendesk.maxwell.filtering.InvalidFilterException;
 import com.zendesk.maxwell.monitoring.MaxwellDiagnosticContext;
+import com.zendesk.maxwell.producer.EncryptionCipher;
 import com.zendesk.maxwell.producer.EncryptionMode;
 import com.zendesk.maxwell.producer.MaxwellOutputConfig;
 import com.zendesk.maxwell.producer.ProducerFactory;
+import com.zendesk.maxwell.producer.OutputFormat;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.row.RowBufferConfig;
 import com.zendesk.maxwell.scripting.Scripting;
 import com.zendesk.maxwell.util.AbstractConfig;
 import joptsimple.BuiltinHelpFormatter;
@@ -22,7 +25,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 
 public class MaxwellConfig extends AbstractConfig {
@@ -54,6 +59,8 @@ public class MaxwellConfig extends AbstractConfig {
 	public String kafkaPartitionKey;
 	public String kafkaPartitionColumns;
 	public String kafkaPartitionFallback;
+	public int kafkaQueueSize;
+	public int kafkaBatchSize;
 	public String bootstrapperType;
 	public int bufferedProducerSize;
 
@@ -74,6 +81,7 @@ public class MaxwellConfig extends AbstractConfig {
 
 	public String outputFile;
 	public MaxwellOutputConfig outputConfig;
+	public RowBufferConfig bufferConfig;
 	public String log_level;
 
 	public MetricRegistry metricRegistry;
@@ -103,6 +111,16 @@ public class MaxwellConfig extends AbstractConfig {
 	public boolean masterRecovery;
 	public boolean ignoreProducerError;
 	public boolean recaptureSchema;
+	public int rowConversionThreads;
+	public int rowConversionChunkSize;
+	public boolean streamTransactions;
+	public int binlogEventQueueSize;
+	public long binlogEventQueueMaxBytes;
+	public long catchupLagThreshold;
+	public ForkJoinPool rowConversionPool; // shared between sources in multi-source mode
+
+	public String sources;
+	public List<MaxwellConfig> sourceConfigs;
 
 	public String rabbitmqUser;
 	public String rabbitmqPass;
@@ -140,6 +158,7 @@ public class MaxwellConfig extends AbstractConfig {
 		this.metricRegistry = new MetricRegistry();
 		this.healthCheckRegistry = new HealthCheckRegistry();
 		this.outputConfig = new MaxwellOutputConfig();
+		this.bufferConfig = new RowBufferConfig();
 		setup(null, null); // setup defaults
 	}
 
@@ -151,6 +170,7 @@ public class MaxwellConfig extends AbstractConfig {
 	protected OptionParser buildOptionParser() {
 		final OptionParser parser = new OptionParser();
 		parser.accepts( "config", "location of config file" ).withRequiredArg();
+		parser.accepts( "sources", "comma separated config files, one per mysql server to replicate from in this process" ).withRequiredArg();
 		parser.accepts( "env_config_prefix", "prefix of env var based config, case insensitive" ).withRequiredArg();
 		parser.accepts( "log_level", "log level, one of DEBUG|INFO|WARN|ERROR" ).withRequiredArg();
 		parser.accepts( "daemon", "daemon, running maxwell as a daemon" ).withOptionalArg();
@@ -203,6 +223,8 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "kafka_partition_hash", "default|murmur3, hash function for partitioning" ).withRequiredArg();
 		parser.accepts( "kafka_topic", "optionally provide a topic name to push to. default: maxwell" ).withRequiredArg();
 		parser.accepts( "kafka_key_format", "how to format the kafka key; array|hash" ).withRequiredArg();
+		parser.accepts( "kafka_queue_size", "number of rows queued up for the kafka producer thread. default: 100" ).withRequiredArg();
+		parser.accepts( "kafka_batch_size", "maximum number of queued rows the kafka producer thread sends at once. default: 100" ).withRequiredArg();
 
 		parser.accepts( "kinesis_stream", "kinesis stream name" ).withOptionalArg();
 		parser.accepts( "sqs_queue_uri", "SQS Queue uri" ).withRequiredArg();
@@ -227,6 +249,9 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "ddl_kafka_topic", "optionally provide an alternate topic to push DDL records to. default: kafka_topic" ).withRequiredArg();
 		parser.accepts("secret_key", "The secret key for the AES encryption" ).withRequiredArg();
 		parser.accepts("encrypt", "encryption mode: [none|data|all]. default: none" ).withRequiredArg();
+		parser.accepts("encrypt_cipher", "encryption cipher: [cbc|gcm]. default: cbc" ).withRequiredArg();
+		parser.accepts( "output_format", "encoding of produced records: [json|protobuf]. default: json" ).withRequiredArg();
+		parser.accepts( "protobuf_schema_dir", "write the protobuf schema of each table version to this directory" ).withRequiredArg();
 
 		parser.accepts( "__separator_5" );
 
@@ -244,6 +269,19 @@ public class MaxwellConfig extends AbstractConfig {
 		parser.accepts( "gtid_mode", "(experimental) enable gtid mode" ).withOptionalArg();
 		parser.accepts( "ignore_producer_error", "Maxwell will be terminated on kafka/kinesis errors when false. Otherwise, those producer errors are only logged. Default to true" ).withOptionalArg();
 		parser.accepts( "recapture_schema", "recapture the latest schema" ).withOptionalArg();
+		parser.accepts( "row_conversion_threads", "number of threads converting binlog rows to maxwell rows; 0 converts on the replication thread. default: 0" ).withRequiredArg();
+		parser.accepts( "row_conversion_chunk_size", "with row_conversion_threads, split row events larger than this many rows across threads. default: 1000" ).withRequiredArg();
+		parser.accepts( "stream_transactions", "output rows of a transaction as they are read rather than at COMMIT, followed by a commit record carrying the xid. default: false" ).withOptionalArg();
+		parser.accepts( "binlog_event_queue_size", "maximum number of binlog events read ahead of the replicator. default: 1000" ).withRequiredArg();
+		parser.accepts( "binlog_event_queue_max_bytes", "maximum total size of binlog events read ahead of the replicator; 0 for no limit. default: 33554432" ).withRequiredArg();
+		parser.accepts( "catchup_lag_threshold", "replication lag in milliseconds above which maxwell switches to catch-up mode; 0 disables. default: 0" ).withRequiredArg();
+		parser.accepts( "buffer_heap_bytes", "estimated heap size of a transaction's rows kept in memory before they're spilled. default: 25% of the max heap" ).withRequiredArg();
+		parser.accepts( "buffer_off_heap_bytes", "off-heap memory that transaction rows past buffer_heap_bytes spill to before going to disk; 0 spills straight to disk. default: 0" ).withRequiredArg();
+		parser.accepts( "spill_compression", "compression of transaction rows spilled to disk: [none|lz4]. default: none" ).withRequiredArg();
+		parser.accepts( "spill_async", "write and read spilled transaction rows on a background thread. default: false" ).withOptionalArg();
+		parser.accepts( "spill_dir", "directory for the files transaction rows are spilled to. default: the JVM's temp directory" ).withRequiredArg();
+		parser.accepts( "spill_segments", "number of spill files kept for reuse once they've been read back. default: 1" ).withRequiredArg();
+		parser.accepts( "spill_segment_bytes", "size the kept spill files are preallocated to on startup. default: 0" ).withRequiredArg();
 
 		parser.accepts( "__separator_7" );
 
@@ -350,6 +388,36 @@ public class MaxwellConfig extends AbstractConfig {
 		if(!arguments.isEmpty()) {
 			usage("Unknown argument(s): " + arguments);
 		}
+
+		this.sources = fetchOption("sources", options, properties, null);
+		if ( this.sources != null )
+			this.sourceConfigs = parseSources(options, properties);
+	}
+
+	/**
+	 * Each source file is layered on top of the shared config file; command line
+	 * options still win over both.
+	 */
+	private List<MaxwellConfig> parseSources(OptionSet options, Properties properties) {
+		List<MaxwellConfig> configs = new ArrayList<>();
+		Set<String> clientIDs = new HashSet<>();
+
+		for ( String filename : this.sources.split(",") ) {
+			Properties sourceProperties = new Properties();
+			sourceProperties.putAll(properties);
+			sourceProperties.remove("sources");
+			sourceProperties.putAll(parseFile(filename.trim(), true));
+
+			MaxwellConfig config = new MaxwellConfig();
+			config.setup(options, sourceProperties);
+
+			if ( !clientIDs.add(config.clientID) )
+				usageForOptions("each of --sources needs its own client_id, \"" + config.clientID + "\" is used twice", "--sources", "--client_id");
+
+			configs.add(config);
+		}
+
+		return configs;
 	}
 
 	private void setup(OptionSet options, Properties properties) {
@@ -379,6 +447,8 @@ public class MaxwellConfig extends AbstractConfig {
 
 		this.kafkaPartitionHash 	= fetchOption("kafka_partition_hash", options, properties, "default");
 		this.ddlKafkaTopic 		    = fetchOption("ddl_kafka_topic", options, properties, this.kafkaTopic);
+		this.kafkaQueueSize         = Integer.parseInt(fetchOption("kafka_queue_size", options, properties, "100"));
+		this.kafkaBatchSize         = Integer.parseInt(fetchOption("kafka_batch_size", options, properties, "100"));
 
 		this.pubsubProjectId = fetchOption("pubsub_project_id", options, properties, null);
 		this.pubsubTopic 		 = fetchOption("pubsub_topic", options, properties, "maxwell");
@@ -503,6 +573,33 @@ public class MaxwellConfig extends AbstractConfig {
 		this.masterRecovery = fetchBooleanOption("master_recovery", options, properties, false);
 		this.ignoreProducerError = fetchBooleanOption("ignore_producer_error", options, properties, true);
 		this.recaptureSchema = fetchBooleanOption("recapture_schema", options, null, false);
+		this.rowConversionThreads = Integer.parseInt(fetchOption("row_conversion_threads", options, properties, "0"));
+		this.rowConversionChunkSize = Integer.parseInt(fetchOption("row_conversion_chunk_size", options, properties, "1000"));
+		this.streamTransactions = fetchBooleanOption("stream_transactions", options, properties, false);
+		this.binlogEventQueueSize = Integer.parseInt(fetchOption("binlog_event_queue_size", options, properties, "1000"));
+		this.binlogEventQueueMaxBytes = fetchLongOption("binlog_event_queue_max_bytes", options, properties, 32L * 1024 * 1024);
+		this.catchupLagThreshold = fetchLongOption("catchup_lag_threshold", options, properties, 0L);
+
+		bufferConfig.heapBytes = fetchLongOption("buffer_heap_bytes", options, properties, RowBufferConfig.defaultHeapBytes());
+		bufferConfig.offHeapBytes = fetchLongOption("buffer_off_heap_bytes", options, properties, 0L);
+
+		bufferConfig.asyncSpill = fetchBooleanOption("spill_async", options, properties, false);
+		bufferConfig.spillDir = fetchOption("spill_dir", options, properties, null);
+		bufferConfig.spillSegments = Integer.parseInt(fetchOption("spill_segments", options, properties, "1"));
+		bufferConfig.spillSegmentBytes = fetchLongOption("spill_segment_bytes", options, properties, 0L);
+
+		String spillCompression = fetchOption("spill_compression", options, properties, "none");
+		switch (spillCompression) {
+			case "none":
+				bufferConfig.compressSpill = false;
+				break;
+			case "lz4":
+				bufferConfig.compressSpill = true;
+				break;
+			default:
+				usageForOptions("Unknown spill compression: " + spillCompression, "--spill_compression");
+				break;
+		}
 
 		outputConfig.includesBinlogPosition = fetchBooleanOption("output_binlog_position", options, properties, false);
 		outputConfig.includesGtidPosition = fetchBooleanOption("output_gtid_position", options, properties, false);
@@ -536,6 +633,33 @@ public class MaxwellConfig extends AbstractConfig {
 			outputConfig.secretKey = fetchOption("secret_key", options, properties, null);
 		}
 
+		String encryptCipher = fetchOption("encrypt_cipher", options, properties, "cbc");
+		switch (encryptCipher) {
+			case "cbc":
+				outputConfig.encryptionCipher = EncryptionCipher.CBC;
+				break;
+			case "gcm":
+				outputConfig.encryptionCipher = EncryptionCipher.GCM;
+				break;
+			default:
+				usageForOptions("Unknown encryption cipher: " + encryptCipher, "--encrypt_cipher");
+				break;
+		}
+
+		String outputFormat = fetchOption("output_format", options, properties, "json");
+		switch (outputFormat) {
+			case "json":
+				outputConfig.outputFormat = OutputFormat.JSON;
+				break;
+			case "protobuf":
+				outputConfig.outputFormat = OutputFormat.PROTOBUF;
+				break;
+			default:
+				usageForOptions("Unknown output format: " + outputFormat, "--output_format");
+				break;
+		}
+		outputConfig.protobufSchemaDir = fetchOption("protobuf_schema_dir", options, properties, null);
+
 	}
 
 	private Properties parseFile(String filename, Boolean abortOnMissing) {
@@ -687,6 +811,54 @@ public class MaxwellConfig extends AbstractConfig {
 			usageForOptions("There is no need to perform master_recovery under gtid_mode", "--gtid_mode");
 		}
 
+		if ( this.rowConversionThreads < 0 ) {
+			usageForOptions("row_conversion_threads must be 0 or greater", "--row_conversion_threads");
+		}
+
+		if ( this.rowConversionChunkSize < 1 ) {
+			usageForOptions("row_conversion_chunk_size must be greater than 0", "--row_conversion_chunk_size");
+		}
+
+		if ( this.binlogEventQueueSize < 1 ) {
+			usageForOptions("binlog_event_queue_size must be greater than 0", "--binlog_event_queue_size");
+		}
+
+		if ( this.binlogEventQueueMaxBytes < 0 ) {
+			usageForOptions("binlog_event_queue_max_bytes must be 0 or greater", "--binlog_event_queue_max_bytes");
+		}
+
+		if ( this.kafkaQueueSize <= 0 ) {
+			usageForOptions("kafka_queue_size must be greater than 0", "--kafka_queue_size");
+		}
+
+		if ( this.kafkaBatchSize <= 0 ) {
+			usageForOptions("kafka_batch_size must be greater than 0", "--kafka_batch_size");
+		}
+
+		if ( this.catchupLagThreshold < 0 ) {
+			usageForOptions("catchup_lag_threshold must be 0 or greater", "--catchup_lag_threshold");
+		}
+
+		if ( this.bufferConfig.heapBytes < 0 ) {
+			usageForOptions("buffer_heap_bytes must be 0 or greater", "--buffer_heap_bytes");
+		}
+
+		if ( this.bufferConfig.offHeapBytes < 0 ) {
+			usageForOptions("buffer_off_heap_bytes must be 0 or greater", "--buffer_off_heap_bytes");
+		}
+
+		if ( this.bufferConfig.spillDir != null && !new File(this.bufferConfig.spillDir).isDirectory() ) {
+			usageForOptions("spill_dir is not a directory: " + this.bufferConfig.spillDir, "--spill_dir");
+		}
+
+		if ( this.bufferConfig.spillSegments < 0 ) {
+			usageForOptions("spill_segments must be 0 or greater", "--spill_segments");
+		}
+
+		if ( this.bufferConfig.spillSegmentBytes < 0 ) {
+			usageForOptions("spill_segment_bytes must be 0 or greater", "--spill_segment_bytes");
+		}
+
 		if (outputConfig.includesGtidPosition && !gtidMode) {
 			usageForOptions("output_gtid_position is only support with gtid mode.", "--output_gtid_position");
 		}
@@ -723,6 +895,12 @@ public class MaxwellConfig extends AbstractConfig {
 		if (outputConfig.encryptionEnabled() && outputConfig.secretKey == null)
 			usage("--secret_key required");
 
+		if ( outputConfig.outputFormat == OutputFormat.PROTOBUF && outputConfig.encryptionEnabled() )
+			usageForOptions("encryption is only supported with output_format=json", "--output_format", "--encrypt");
+
+		if ( outputConfig.protobufSchemaDir != null && !new File(outputConfig.protobufSchemaDir).isDirectory() )
+			usageForOptions("protobuf_schema_dir is not a directory: " + outputConfig.protobufSchemaDir, "--protobuf_schema_dir");
+
 		if ( !maxwellMysql.sameServerAs(replicationMysql) && !this.bootstrapperType.equals("none") ) {
 			LOGGER.warn("disabling bootstrapping; not available when using a separate replication host.");
 			this.bootstrapperType = "none";
@@ -53,6 +53,7 @@ public class MaxwellContext {
 	private Thread terminationThread;
 
 	private final HeartbeatNotifier heartbeatNotifier;
+	private final CatchUpMode catchUpMode;
 	private final MaxwellDiagnosticContext diagnosticContext;
 	private BinlogBootstrapEvent bootstrapEvent ;
 
@@ -95,6 +96,7 @@ public class MaxwellContext {
 		}
 
 		this.heartbeatNotifier = new HeartbeatNotifier();
+		this.catchUpMode = new CatchUpMode(config.catchupLagThreshold);
 		List<MaxwellDiagnostic> diagnostics = new ArrayList<>(Collections.singletonList(new BinlogConnectorDiagnostic(this)));
 		this.diagnosticContext = new MaxwellDiagnosticContext(config.diagnosticConfig, diagnostics);
 	}
@@ -457,6 +459,10 @@ public class MaxwellContext {
 		return heartbeatNotifier;
 	}
 
+	public CatchUpMode getCatchUpMode() {
+		return catchUpMode;
+	}
+
 	public MaxwellDiagnosticContext getDiagnosticContext() {
 		return this.diagnosticContext;
 	}
@@ -0,0 +1,78 @@
+package com.zendesk.maxwell;
+
+import com.zendesk.maxwell.replication.PipelinedRowConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URISyntaxException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs one Maxwell per --sources entry inside a single process.
+ *
+ * Every source is a complete Maxwell with its own context: connection pools,
+ * schema store, position row (keyed by its server_id and client_id), replicator
+ * and producer.  What they share is what's expensive to have many of: kafka
+ * clients (see SharedKafkaProducers) and, with row_conversion_threads, a single
+ * row-conversion pool sized once for the whole process.
+ *
+ * If any source stops the whole process stops, just as a single maxwell would.
+ */
+public class MaxwellMultiSource {
+	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellMultiSource.class);
+
+	private final List<Maxwell> sources = new ArrayList<>();
+	private final ForkJoinPool rowConversionPool;
+	private volatile Exception error;
+
+	public MaxwellMultiSource(MaxwellConfig config) throws SQLException, URISyntaxException {
+		if ( config.rowConversionThreads > 0 )
+			this.rowConversionPool = PipelinedRowConverter.createPool(config.rowConversionThreads);
+		else
+			this.rowConversionPool = null;
+
+		for ( MaxwellConfig sourceConfig : config.sourceConfigs ) {
+			sourceConfig.rowConversionPool = this.rowConversionPool;
+			sources.add(new Maxwell(sourceConfig));
+		}
+	}
+
+	public void start() throws Exception {
+		List<Thread> threads = new ArrayList<>();
+
+		for ( Maxwell maxwell : sources ) {
+			Thread thread = new Thread(() -> {
+				try {
+					maxwell.start();
+				} catch ( Exception e ) {
+					LOGGER.error("source " + maxwell.config.clientID + " encountered an exception", e);
+					if ( this.error == null )
+						this.error = e;
+				} finally {
+					// one source going down takes the others with it
+					terminate();
+				}
+			}, "maxwell-source-" + maxwell.config.clientID);
+
+			thread.start();
+			threads.add(thread);
+		}
+
+		for ( Thread thread : threads )
+			thread.join();
+
+		if ( rowConversionPool != null )
+			rowConversionPool.shutdownNow();
+
+		if ( error != null )
+			throw error;
+	}
+
+	public void terminate() {
+		for ( Maxwell maxwell : sources )
+			maxwell.terminate();
+	}
+}
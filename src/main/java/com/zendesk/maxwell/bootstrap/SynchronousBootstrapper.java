@@ -4,6 +4,8 @@ import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.replication.Replicator;
+import com.zendesk.maxwell.row.ColumnLayout;
+import com.zendesk.maxwell.row.ColumnValueMap;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.schema.Database;
@@ -18,7 +20,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.sql.*;
-import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 public class SynchronousBootstrapper extends AbstractBootstrapper {
@@ -72,9 +73,10 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 			ResultSet resultSet = getAllRows(databaseName, tableName, schema, whereClause, streamingConnection);
 			int insertedRows = 0;
 			lastInsertedRowsUpdateTimeMillis = 0; // ensure updateInsertedRowsColumn is called at least once
+			ColumnLayout layout = new ColumnLayout(table.getColumnList());
 			while ( resultSet.next() ) {
 				RowMap row = bootstrapEventRowMap("bootstrap-insert", table, position);
-				setRowValues(row, resultSet, table);
+				setRowValues(row, resultSet, layout);
 				row.setSchemaId(schemaId);
 
 				Scripting scripting = context.getConfig().scripting;
@@ -326,12 +328,11 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 		}
 	}
 
-	private void setRowValues(RowMap row, ResultSet resultSet, Table table) throws SQLException, IOException {
-		Iterator<ColumnDef> columnDefinitions = table.getColumnList().iterator();
-//		LOGGER.info("setRowValues-->row:{},columnDefinitions:{}",row.toString(),table.getColumnList());
-		int columnIndex = 1;
-		while ( columnDefinitions.hasNext() ) {
-			ColumnDef columnDefinition = columnDefinitions.next();
+	private void setRowValues(RowMap row, ResultSet resultSet, ColumnLayout layout) throws SQLException, IOException {
+		ColumnValueMap values = new ColumnValueMap(layout);
+		for ( int i = 0; i < layout.size(); i++ ) {
+			ColumnDef columnDefinition = layout.getColumn(i);
+			int columnIndex = i + 1;
 			Object columnValue;
 
 			// need to explicitly coerce TIME into TIMESTAMP in order to preserve nanoseconds
@@ -340,14 +341,12 @@ public class SynchronousBootstrapper extends AbstractBootstrapper {
 			else
 				columnValue = resultSet.getObject(columnIndex);
 
-			row.putData(
+			values.put(
 				columnDefinition.getName(),
 				columnValue == null ? null : columnDefinition.asJSON(columnValue)
 			);
-
-			++columnIndex;
 		}
-//		LOGGER.info("setRowValues-->end row:{}",row.toString());
+		row.setData(values);
 	}
 
 }
@@ -61,6 +61,18 @@ public class Filter {
 		return false;
 	}
 
+	/**
+	 * If no pattern matches on values for this table, every row of it gets the same
+	 * answer as includes(database, table) and row values needn't be looked at.
+	 */
+	public boolean hasValueFilters(String database, String table) {
+		for ( FilterPattern p : patterns ) {
+			if ( p.matchesValues(database, table) )
+				return true;
+		}
+		return false;
+	}
+
 	public boolean isTableBlacklisted(String database, String table) {
 		FilterResult match = new FilterResult();
 
@@ -114,6 +126,14 @@ public class Filter {
 		}
 	}
 
+	public static boolean hasValueFilters(Filter filter, String database, String table) {
+		if (filter == null) {
+			return false;
+		} else {
+			return filter.hasValueFilters(database, table);
+		}
+	}
+
 	public static boolean couldIncludeFromColumnFilters(Filter filter, String database, String table, Set<String> columnNames) {
 		if (filter == null) {
 			return false;
@@ -62,6 +62,11 @@ public class FilterColumnPattern extends FilterPattern {
 			&& columns.contains(columnName);
 	}
 
+	@Override
+	public boolean matchesValues(String database, String table) {
+		return appliesTo(database, table);
+	}
+
 	@Override
 	public String toString() {
 		String filterString = super.toString();
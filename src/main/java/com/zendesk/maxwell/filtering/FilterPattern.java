@@ -73,4 +73,11 @@ public class FilterPattern {
 	public boolean couldIncludeColumn(String database, String table, Set<String> columns) {
 		return false;
 	}
+
+	/**
+	 * Does this pattern look at row values (as opposed to just names) for the given table?
+	 */
+	public boolean matchesValues(String database, String table) {
+		return false;
+	}
 }
@@ -27,18 +27,37 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 
 		public void markCompleted() {
 			if(isTXCommit) {
-				InflightMessageList.InflightMessage message = inflightMessages.completeMessage(position);
-
-				if (message != null) {
-					context.setPosition(message.position);
-					long currentTime = System.currentTimeMillis();
-					messagePublishTimer.update(currentTime - message.sendTimeMS, TimeUnit.MILLISECONDS);
-					messageLatencyTimer.update(Math.max(0L, currentTime - message.eventTimeMS - 500L), TimeUnit.MILLISECONDS);
-				}
+				completeCommit(position);
 			}
 		}
 	}
 
+	/**
+	 * Stands in for a CallbackCompleter per row when rows are sent in batches:
+	 * one per batch, remembering which of the batch's rows commit a transaction.
+	 */
+	public class BatchCompleter {
+		private final Position[] commits;
+
+		public BatchCompleter(int size) {
+			this.commits = new Position[size];
+		}
+
+		/**
+		 * Note that row `i` of the batch is being sent; see beginMessage.
+		 */
+		public void add(int i, RowMap r) {
+			if ( r.isTXCommit() )
+				commits[i] = r.getNextPosition();
+		}
+
+		public void markCompleted(int i) {
+			Position position = commits[i];
+			if ( position != null )
+				completeCommit(position);
+		}
+	}
+
 	private InflightMessageList inflightMessages;
 
 	public AbstractAsyncProducer(MaxwellContext context) {
@@ -55,6 +74,21 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 
 	@Override
 	public final void push(RowMap r) throws Exception {
+		if ( !beginMessage(r) )
+			return;
+
+		CallbackCompleter cc = new CallbackCompleter(inflightMessages, r.getNextPosition(), r.isTXCommit(), context);
+//		LOGGER.info("AbstractAsyncProducer push:{},ThreadThread:{}",r,Thread.currentThread().getName());
+		sendAsync(r, cc);
+	}
+
+	/**
+	 * Start tracking a row that's about to be sent.  Must be called in row order,
+	 * right before each send, as push does.
+	 *
+	 * @return false if the row isn't to be output, in which case it's already complete
+	 */
+	protected final boolean beginMessage(RowMap r) throws InterruptedException {
 		Position position = r.getNextPosition();
 		// Rows that do not get sent to a target will be automatically marked as complete.
 		// We will attempt to commit a checkpoint up to the current row.
@@ -65,15 +99,23 @@ public abstract class AbstractAsyncProducer extends AbstractProducer {
 			if(completed != null) {
 				context.setPosition(completed.position);
 			}
-			return;
+			return false;
 		}
 
 		if(r.isTXCommit()) {
 			inflightMessages.addMessage(position, r.getTimestampMillis());
 		}
+		return true;
+	}
 
-		CallbackCompleter cc = new CallbackCompleter(inflightMessages, position, r.isTXCommit(), context);
-//		LOGGER.info("AbstractAsyncProducer push:{},ThreadThread:{}",r,Thread.currentThread().getName());
-		sendAsync(r, cc);
+	private void completeCommit(Position position) {
+		InflightMessageList.InflightMessage message = inflightMessages.completeMessage(position);
+
+		if (message != null) {
+			context.setPosition(message.position);
+			long currentTime = System.currentTimeMillis();
+			messagePublishTimer.update(currentTime - message.sendTimeMS, TimeUnit.MILLISECONDS);
+			messageLatencyTimer.update(Math.max(0L, currentTime - message.eventTimeMS - 500L), TimeUnit.MILLISECONDS);
+		}
 	}
 }
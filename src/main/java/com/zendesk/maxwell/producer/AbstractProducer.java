@@ -7,12 +7,14 @@ import com.codahale.metrics.Timer;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.monitoring.MaxwellDiagnostic;
 import com.zendesk.maxwell.monitoring.Metrics;
+import com.zendesk.maxwell.row.RowEncoder;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.util.StoppableTask;
 
 public abstract class AbstractProducer {
 	protected final MaxwellContext context;
 	protected final MaxwellOutputConfig outputConfig;
+	protected final RowEncoder encoder;
 	protected final Counter succeededMessageCount;
 	protected final Meter succeededMessageMeter;
 	protected final Counter failedMessageCount;
@@ -23,6 +25,7 @@ public abstract class AbstractProducer {
 	public AbstractProducer(MaxwellContext context) {
 		this.context = context;
 		this.outputConfig = context.getConfig().outputConfig;
+		this.encoder = RowEncoder.forConfig(outputConfig);
 
 		Metrics metrics = context.getMetrics();
 		MetricRegistry metricRegistry = metrics.getRegistry();
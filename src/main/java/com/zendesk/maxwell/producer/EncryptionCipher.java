@@ -0,0 +1,6 @@
+package com.zendesk.maxwell.producer;
+
+public enum EncryptionCipher {
+	CBC,
+	GCM
+}
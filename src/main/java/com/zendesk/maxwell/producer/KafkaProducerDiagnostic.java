@@ -52,7 +52,7 @@ public class KafkaProducerDiagnostic implements MaxwellDiagnostic {
 			RowMap rowMap = new RowMap("insert", config.databaseName, "dummy", System.currentTimeMillis(),
 					new ArrayList<>(), positionStoreThread.getPosition());
 			rowMap.setTXCommit();
-			ProducerRecord<String, String> record = producer.makeProducerRecord(rowMap);
+			ProducerRecord<String, byte[]> record = producer.makeProducerRecord(rowMap);
 			producer.sendAsync(record, callback);
 		} catch (Exception e) {
 			callback.latency.completeExceptionally(e);
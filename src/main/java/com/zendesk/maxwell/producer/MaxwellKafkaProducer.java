@@ -4,6 +4,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.zendesk.maxwell.MaxwellContext;
 import com.zendesk.maxwell.producer.partitioners.MaxwellKafkaPartitioner;
+import com.zendesk.maxwell.replication.CatchUpMode;
 import com.zendesk.maxwell.replication.Position;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.row.RowMap.KeyFormat;
@@ -16,10 +17,11 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.errors.RecordTooLargeException;
-import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeoutException;
@@ -53,31 +55,97 @@ class KafkaCallback implements Callback {
 
 	@Override
 	public void onCompletion(RecordMetadata md, Exception e) {
+		if ( report(md, e, position, key, json, succeededMessageCount, failedMessageCount,
+				succeededMessageMeter, failedMessageMeter, context) )
+			cc.markCompleted();
+	}
+
+	/**
+	 * Count and log the outcome of sending one message.
+	 *
+	 * @return false if the error is terminating maxwell, in which case the message
+	 *         mustn't be marked completed
+	 */
+	static boolean report(RecordMetadata md, Exception e, Position position, String key, String json,
+	                      Counter succeededMessageCount, Counter failedMessageCount, Meter succeededMessageMeter,
+	                      Meter failedMessageMeter, MaxwellContext context) {
 		if ( e != null ) {
-			this.failedMessageCount.inc();
-			this.failedMessageMeter.mark();
+			failedMessageCount.inc();
+			failedMessageMeter.mark();
 
 			LOGGER.error(e.getClass().getSimpleName() + " @ " + position + " -- " + key);
 			LOGGER.error(e.getLocalizedMessage());
 			if ( e instanceof RecordTooLargeException ) {
 				LOGGER.error("Considering raising max.request.size broker-side.");
-			} else if (!this.context.getConfig().ignoreProducerError) {
-				this.context.terminate(e);
-				return;
+			} else if (!context.getConfig().ignoreProducerError) {
+				context.terminate(e);
+				return false;
 			}
 		} else {
-			this.succeededMessageCount.inc();
-			this.succeededMessageMeter.mark();
+			succeededMessageCount.inc();
+			succeededMessageMeter.mark();
 
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug("->  key:" + key + ", partition:" + md.partition() + ", offset:" + md.offset());
-				LOGGER.debug("   " + this.json);
+				LOGGER.debug("   " + json);
 				LOGGER.debug("   " + position);
 				LOGGER.debug("");
 			}
 		}
+		return true;
+	}
+}
+
+/*
+   the callbacks of a batch of messages sent together.  One of these tracks
+   the whole batch, in place of a KafkaCallback and CallbackCompleter per
+   message; each message's callback just points at its slot.
+ */
+class KafkaBatchCallback {
+	private final AbstractAsyncProducer.BatchCompleter completer;
+	private final Position[] positions;
+	private final String[] keys;
+	private final String[] json;
+
+	private final Counter succeededMessageCount;
+	private final Counter failedMessageCount;
+	private final Meter succeededMessageMeter;
+	private final Meter failedMessageMeter;
+	private final MaxwellContext context;
+
+	public KafkaBatchCallback(AbstractAsyncProducer.BatchCompleter completer, int size,
+	                          Counter producedMessageCount, Counter failedMessageCount, Meter producedMessageMeter,
+	                          Meter failedMessageMeter, MaxwellContext context) {
+		this.completer = completer;
+		this.positions = new Position[size];
+		this.keys = new String[size];
+		this.json = KafkaCallback.LOGGER.isDebugEnabled() ? new String[size] : null;
+		this.succeededMessageCount = producedMessageCount;
+		this.failedMessageCount = failedMessageCount;
+		this.succeededMessageMeter = producedMessageMeter;
+		this.failedMessageMeter = failedMessageMeter;
+		this.context = context;
+	}
 
-		cc.markCompleted();
+	public boolean wantsJson() {
+		return json != null;
+	}
+
+	/**
+	 * @return the callback for message `i` of the batch
+	 */
+	public Callback add(int i, Position position, String key, String value) {
+		positions[i] = position;
+		keys[i] = key;
+		if ( json != null )
+			json[i] = value;
+		return (md, e) -> onCompletion(i, md, e);
+	}
+
+	private void onCompletion(int i, RecordMetadata md, Exception e) {
+		if ( KafkaCallback.report(md, e, positions[i], keys[i], json == null ? null : json[i], succeededMessageCount,
+				failedMessageCount, succeededMessageMeter, failedMessageMeter, context) )
+			completer.markCompleted(i);
 	}
 }
 
@@ -88,7 +156,7 @@ public class MaxwellKafkaProducer extends AbstractProducer {
 
 	public MaxwellKafkaProducer(MaxwellContext context, Properties kafkaProperties, String kafkaTopic) {
 		super(context);
-		this.queue = new ArrayBlockingQueue<>(100);
+		this.queue = new ArrayBlockingQueue<>(context.getConfig().kafkaQueueSize);
 		this.worker = new MaxwellKafkaProducerWorker(context, kafkaProperties, kafkaTopic, this.queue);
 		Thread thread = new Thread(this.worker, "maxwell-kafka-worker");
 		thread.setDaemon(true);
@@ -114,8 +182,9 @@ public class MaxwellKafkaProducer extends AbstractProducer {
 
 class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnable, StoppableTask {
 	static final Logger LOGGER = LoggerFactory.getLogger(MaxwellKafkaProducer.class);
+	static final int CATCHUP_BATCH_FACTOR = 4;
 
-	private final KafkaProducer<String, String> kafka;
+	private final KafkaProducer<String, byte[]> kafka;
 	private String topic;
 	private final String ddlTopic;
 	private final MaxwellKafkaPartitioner partitioner;
@@ -123,8 +192,14 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 	private final KeyFormat keyFormat;
 	private final boolean interpolateTopic;
 	private final ArrayBlockingQueue<RowMap> queue;
+	private final int batchSize;
+	private final int catchUpBatchSize;
+	private final CatchUpMode catchUpMode;
+	private final ArrayList<RowMap> batch;
+	private final ArrayList<ProducerRecord<String, byte[]>> records;
 	private Thread thread;
 	private StoppableTaskState taskState;
+	private boolean kafkaReleased;
 
 	public static MaxwellKafkaPartitioner makeDDLPartitioner(String partitionHashFunc, String partitionKey) {
 		if ( partitionKey.equals("table") ) {
@@ -143,7 +218,7 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		}
 
 		this.interpolateTopic = this.topic.contains("%{");
-		this.kafka = new KafkaProducer<>(kafkaProperties, new StringSerializer(), new StringSerializer());
+		this.kafka = SharedKafkaProducers.acquire(kafkaProperties);
 //		LOGGER.info("MaxwellKafkaProducerWorker servers-->:{},topic-->:{}",kafkaProperties.getProperty("bootstrap.servers"),this.topic);
 		String hash = context.getConfig().kafkaPartitionHash;
 		String partitionKey = context.getConfig().producerPartitionKey;
@@ -160,6 +235,11 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 			keyFormat = KeyFormat.ARRAY;
 
 		this.queue = queue;
+		this.batchSize = context.getConfig().kafkaBatchSize;
+		this.catchUpBatchSize = (int) Math.min((long) batchSize * CATCHUP_BATCH_FACTOR, Integer.MAX_VALUE);
+		this.catchUpMode = context.getCatchUpMode();
+		this.batch = new ArrayList<>(batchSize);
+		this.records = new ArrayList<>(batchSize);
 		this.taskState = new StoppableTaskState("MaxwellKafkaProducerWorker");
 	}
 
@@ -169,13 +249,19 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		this.thread = Thread.currentThread();
 		while ( true ) {
 			try {
-				RowMap row = queue.take();
+				// block for one row, then take whatever else has queued up behind it
+				batch.add(queue.take());
+				queue.drainTo(batch, batchLimit() - 1);
 				if (!taskState.isRunning()) {
 					taskState.stopped();
 					return;
 				}
 //				LOGGER.info("MaxwellKafkaProducerWorker run push:{}",row);
-				this.push(row);
+				if ( batch.size() == 1 )
+					this.push(batch.get(0));
+				else
+					this.pushBatch(batch);
+				batch.clear();
 			} catch ( Exception e ) {
 				taskState.stopped();
 				context.terminate(e);
@@ -184,6 +270,40 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		}
 	}
 
+	// while catching up, take bigger bites of the backlog so kafka gets fuller batches
+	private int batchLimit() {
+		return catchUpMode != null && catchUpMode.isActive() ? catchUpBatchSize : batchSize;
+	}
+
+	/**
+	 * Send rows drained from the queue together: encode them all, then send them
+	 * in order, tracked by one KafkaBatchCallback.
+	 */
+	void pushBatch(List<RowMap> rows) throws Exception {
+		int size = rows.size();
+		BatchCompleter completer = new BatchCompleter(size);
+		KafkaBatchCallback callbacks = new KafkaBatchCallback(completer, size,
+				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
+
+		try {
+			for ( RowMap r : rows )
+				records.add(r.shouldOutput(outputConfig) ? makeProducerRecord(r) : null);
+
+			for ( int i = 0; i < size; i++ ) {
+				RowMap r = rows.get(i);
+				if ( !beginMessage(r) )
+					continue;
+
+				ProducerRecord<String, byte[]> record = records.get(i);
+				String value = callbacks.wantsJson() ? encoder.describe(record.value()) : null;
+				completer.add(i, r);
+				sendAsync(record, callbacks.add(i, r.getNextPosition(), record.key(), value));
+			}
+		} finally {
+			records.clear();
+		}
+	}
+
 	private Integer getNumPartitions(String topic) {
 		try {
 			return this.kafka.partitionsFor(topic).size(); //returns 1 for new topics
@@ -202,10 +322,10 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 
 	@Override
 	public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
-		ProducerRecord<String, String> record = makeProducerRecord(r);
+		ProducerRecord<String, byte[]> record = makeProducerRecord(r);
 
-		/* if debug logging isn't enabled, release the reference to `value`, which can ease memory pressure somewhat */
-		String value = KafkaCallback.LOGGER.isDebugEnabled() ? record.value() : null;
+		/* only decode the value back into a string if we're going to log it */
+		String value = KafkaCallback.LOGGER.isDebugEnabled() ? encoder.describe(record.value()) : null;
 
 		KafkaCallback callback = new KafkaCallback(cc, r.getNextPosition(), record.key(), value,
 				this.succeededMessageCount, this.failedMessageCount, this.succeededMessageMeter, this.failedMessageMeter, this.context);
@@ -213,15 +333,15 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 		sendAsync(record, callback);
 	}
 
-	void sendAsync(ProducerRecord<String, String> record, Callback callback) throws Exception {
+	void sendAsync(ProducerRecord<String, byte[]> record, Callback callback) throws Exception {
 //		LOGGER.info("MaxwellKafkaProducerWorker sendAsync:{},ThreadThread:{},topic-->:{}",record.toString(),Thread.currentThread().getName(),this.topic);
 		kafka.send(record, callback);
 	}
 
-	ProducerRecord<String, String> makeProducerRecord(final RowMap r) throws Exception {
+	ProducerRecord<String, byte[]> makeProducerRecord(final RowMap r) throws Exception {
 		String key = r.pkToJson(keyFormat);
-		String value = r.toJSON(outputConfig);
-		ProducerRecord<String, String> record;
+		byte[] value = encoder.encode(r);
+		ProducerRecord<String, byte[]> record;
 		if (r instanceof DDLMap) {
 			record = new ProducerRecord<>(this.ddlTopic, this.ddlPartitioner.kafkaPartition(r, getNumPartitions(this.ddlTopic)), key, value);
 		} else {
@@ -241,7 +361,7 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 	public void requestStop() {
 		taskState.requestStop();
 		// TODO: set a timeout once we drop support for kafka 0.8
-		kafka.close();
+		releaseKafka();
 	}
 
 	@Override
@@ -251,7 +371,14 @@ class MaxwellKafkaProducerWorker extends AbstractAsyncProducer implements Runnab
 
 	// force-close for tests.
 	public void close() {
-		kafka.close();
+		releaseKafka();
+	}
+
+	private synchronized void releaseKafka() {
+		if ( kafkaReleased )
+			return;
+		kafkaReleased = true;
+		SharedKafkaProducers.release(kafka);
 	}
 
 	@Override
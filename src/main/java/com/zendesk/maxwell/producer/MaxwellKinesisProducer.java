@@ -119,14 +119,15 @@ public class MaxwellKinesisProducer extends AbstractAsyncProducer {
 	@Override
 	public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc) throws Exception {
 		String key = this.partitioner.getKinesisKey(r);
-		String value = r.toJSON(outputConfig);
-		int vsize = value.length();
+		byte[] bytes = encoder.encode(r);
+		int vsize = bytes.length;
 
-		ByteBuffer encodedValue = ByteBuffer.wrap(value.getBytes("UTF-8"));
+		ByteBuffer encodedValue = ByteBuffer.wrap(bytes);
 
-		// release the reference to ease memory pressure
-		if(!KinesisCallback.logger.isDebugEnabled()) {
-			value = null;
+		// only decode the value back into a string if we're going to log it
+		String value = null;
+		if(KinesisCallback.logger.isDebugEnabled()) {
+			value = encoder.describe(bytes);
 		}
 
 		FutureCallback<UserRecordResult> callback = new KinesisCallback(cc, r.getNextPosition(), key, value,
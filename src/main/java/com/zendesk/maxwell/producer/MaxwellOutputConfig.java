@@ -19,6 +19,9 @@ public class MaxwellOutputConfig {
 	public List<Pattern> excludeColumns;
 	public EncryptionMode encryptionMode;
 	public String secretKey;
+	public EncryptionCipher encryptionCipher;
+	public OutputFormat outputFormat;
+	public String protobufSchemaDir;
 
 	public MaxwellOutputConfig() {
 		this.includesBinlogPosition = false;
@@ -33,6 +36,9 @@ public class MaxwellOutputConfig {
 		this.excludeColumns = new ArrayList<>();
 		this.encryptionMode = EncryptionMode.ENCRYPT_NONE;
 		this.secretKey = null;
+		this.encryptionCipher = EncryptionCipher.CBC;
+		this.outputFormat = OutputFormat.JSON;
+		this.protobufSchemaDir = null;
 	}
 
 	public boolean encryptionEnabled() {
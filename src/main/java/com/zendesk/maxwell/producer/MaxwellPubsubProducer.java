@@ -176,8 +176,10 @@ class MaxwellPubsubProducerWorker
   @Override
   public void sendAsync(RowMap r, AbstractAsyncProducer.CallbackCompleter cc)
       throws Exception {
-    String message = r.toJSON(outputConfig);
-    ByteString data = ByteString.copyFromUtf8(message);
+    byte[] bytes = encoder.encode(r);
+    ByteString data = ByteString.copyFrom(bytes);
+    // only decode the value back into a string if we're going to log it
+    String message = PubsubCallback.LOGGER.isDebugEnabled() ? encoder.describe(bytes) : null;
     PubsubMessage pubsubMessage = PubsubMessage.newBuilder().setData(data).build();
 
     if ( r instanceof DDLMap ) {
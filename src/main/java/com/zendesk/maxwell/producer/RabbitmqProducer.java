@@ -47,15 +47,15 @@ public class RabbitmqProducer extends AbstractProducer {
 			return;
 		}
 
-		String value = r.toJSON(outputConfig);
+		byte[] value = encoder.encode(r);
 		String routingKey = getRoutingKeyFromTemplate(r);
 
-		channel.basicPublish(exchangeName, routingKey, props, value.getBytes());
+		channel.basicPublish(exchangeName, routingKey, props, value);
 		if ( r.isTXCommit() ) {
 			context.setPosition(r.getNextPosition());
 		}
 		if ( LOGGER.isDebugEnabled()) {
-			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + value);
+			LOGGER.debug("->  routing key:" + routingKey + ", partition:" + encoder.describe(value));
 		}
 	}
 
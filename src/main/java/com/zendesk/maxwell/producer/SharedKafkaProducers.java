@@ -0,0 +1,66 @@
+package com.zendesk.maxwell.producer;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Properties;
+
+/**
+ * KafkaProducer instances shared between the sources of a multi-source maxwell.
+ *
+ * A KafkaProducer is thread-safe and holds the broker connections, metadata and
+ * send buffers, so sources writing to the same cluster with the same settings
+ * get one instance between them.  Each source keeps its own worker thread and
+ * in-flight bookkeeping; only the client is shared.  It's closed when the last
+ * source using it lets go.
+ */
+class SharedKafkaProducers {
+	private static final HashMap<Properties, Entry> byProperties = new HashMap<>();
+	private static final IdentityHashMap<KafkaProducer<String, byte[]>, Entry> byProducer = new IdentityHashMap<>();
+
+	private static class Entry {
+		final Properties properties;
+		final KafkaProducer<String, byte[]> producer;
+		int refCount;
+
+		Entry(Properties properties, KafkaProducer<String, byte[]> producer) {
+			this.properties = properties;
+			this.producer = producer;
+		}
+	}
+
+	static synchronized KafkaProducer<String, byte[]> acquire(Properties kafkaProperties) {
+		Properties key = new Properties();
+		key.putAll(kafkaProperties);
+
+		Entry e = byProperties.get(key);
+		if ( e == null ) {
+			e = new Entry(key, new KafkaProducer<>(kafkaProperties, new StringSerializer(), new ByteArraySerializer()));
+			byProperties.put(key, e);
+			byProducer.put(e.producer, e);
+		}
+
+		e.refCount++;
+		return e.producer;
+	}
+
+	/**
+	 * Give up a producer obtained from acquire(), closing it if nobody else is using it.
+	 */
+	static void release(KafkaProducer<String, byte[]> producer) {
+		synchronized (SharedKafkaProducers.class) {
+			Entry e = byProducer.get(producer);
+			if ( e == null || --e.refCount > 0 )
+				return;
+
+			byProducer.remove(producer);
+			byProperties.remove(e.properties);
+		}
+
+		// outside the lock: close() waits for in-flight sends
+		producer.close();
+	}
+}
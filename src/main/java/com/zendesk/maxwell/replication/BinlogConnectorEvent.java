@@ -1,14 +1,16 @@
 package com.zendesk.maxwell.replication;
 
 import com.github.shyiko.mysql.binlog.event.*;
+import com.zendesk.maxwell.row.ColumnLayout;
+import com.zendesk.maxwell.row.ColumnValueMap;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.schema.Table;
-import com.zendesk.maxwell.schema.columndef.ColumnDef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Predicate;
 
 public class BinlogConnectorEvent {
 	private static final Logger LOGGER = LoggerFactory.getLogger(BinlogConnectorEvent.class);
@@ -109,54 +111,73 @@ public class BinlogConnectorEvent {
 		return false;
 	}
 
-	private void writeData(Table table, RowMap row, Serializable[] data, BitSet includedColumns) {
-		int dataIdx = 0, colIdx = 0;
-//		LOGGER.info("BinlogCE writeData-->table:{},row:{},data:{}",table.getColumnList(),row.toString(),data);
-		for ( ColumnDef cd : table.getColumnList() ) {
+	/**
+	 * Copy a row image into `values` without decoding it.
+	 */
+	private void writeData(ColumnLayout layout, ColumnValueMap values, Serializable[] data, BitSet includedColumns) {
+		int dataIdx = 0;
+		for ( int colIdx = 0; colIdx < layout.size(); colIdx++ ) {
 			if ( includedColumns.get(colIdx) ) {
-				Object json = null;
-				if ( data[dataIdx] != null ) {
-					json = cd.asJSON(data[dataIdx]);
-				}
-				row.putData(cd.getName(), json);
-//				LOGGER.info("BinlogCE writeData-->ColumnDef cd:{},json:{}",cd.getName(),null==json? "null":json.toString());
+				values.putRaw(colIdx, data[dataIdx]);
 				dataIdx++;
 			}
-			colIdx++;
 		}
 	}
 
-	private void writeOldData(Table table, RowMap row, Serializable[] oldData, BitSet oldIncludedColumns) {
-		int dataIdx = 0, colIdx = 0;
-//		LOGGER.info("BinlogCE writeOldData-->table:{},row:{},oldData:{}",table.getColumnList(),row.toString(),oldData.toString());
-		for ( ColumnDef cd : table.getColumnList() ) {
+	/**
+	 * Copy the BEFORE-image columns that the AFTER image lacks (binlog_row_image = MINIMAL)
+	 * into `values`, the same as writeOldData does.  Lets a row filter see them before
+	 * we decide whether to build the row at all.
+	 */
+	private void mergeMinimalData(ColumnLayout layout, ColumnValueMap values, Serializable[] oldData, BitSet oldIncludedColumns) {
+		int dataIdx = 0;
+		for ( int colIdx = 0; colIdx < layout.size(); colIdx++ ) {
 			if ( oldIncludedColumns.get(colIdx) ) {
-				Object json = null;
-				if ( oldData[dataIdx] != null ) {
-					json = cd.asJSON(oldData[dataIdx]);
-				}
+				if ( !values.containsColumn(colIdx) )
+					values.putRaw(colIdx, oldData[dataIdx]);
+				dataIdx++;
+			}
+		}
+	}
+
+	private void writeOldData(ColumnLayout layout, ColumnValueMap values, RowMap row, Serializable[] oldData, BitSet oldIncludedColumns) {
+		ColumnValueMap oldValues = null;
+		int dataIdx = 0;
+		for ( int colIdx = 0; colIdx < layout.size(); colIdx++ ) {
+			if ( oldIncludedColumns.get(colIdx) ) {
+				Serializable raw = oldData[dataIdx];
 
-				if (!row.hasData(cd.getName())) {
+				if (!values.containsColumn(colIdx)) {
 					/*
 					   If we find a column in the BEFORE image that's *not* present in the AFTER image,
 					   we're running in binlog_row_image = MINIMAL.  In this case, the BEFORE image acts
 					   as a sort of WHERE clause to update rows with the new values (present in the AFTER image),
 					   In this case we should put what's in the "before" image into the "data" section, not the "old".
 					 */
-					row.putData(cd.getName(), json);
-				} else {
-					if (!Objects.equals(row.getData(cd.getName()), json)) {
-						row.putOldData(cd.getName(), json);
+					values.putRaw(colIdx, raw);
+				} else if (!values.rawEquals(colIdx, raw)) {
+					// unchanged columns are skipped above without being decoded.
+					Object json = null;
+					if ( raw != null ) {
+						json = layout.getColumn(colIdx).asJSON(raw);
+					}
+
+					if (!Objects.equals(values.get(colIdx), json)) {
+						if ( oldValues == null )
+							oldValues = new ColumnValueMap(layout);
+						oldValues.putDecoded(colIdx, json);
 					}
 				}
 				dataIdx++;
 			}
-			colIdx++;
 		}
+
+		if ( oldValues != null )
+			row.setOldData(oldValues);
 	}
 
-	private RowMap buildRowMap(String type, Position position, Position nextPosition, Serializable[] data, Table table, BitSet includedColumns, String rowQuery) {
-		RowMap map = new RowMap(
+	private RowMap buildRowMap(String type, Position position, Position nextPosition, Table table, String rowQuery) {
+		return new RowMap(
 			type,
 			table.getDatabase(),
 			table.getName(),
@@ -166,13 +187,44 @@ public class BinlogConnectorEvent {
 			nextPosition,
 			rowQuery
 		);
+	}
 
-		writeData(table, map, data, includedColumns);
-		return map;
+	/**
+	 * @return the number of rows carried by a rows-event, 0 for any other event.
+	 */
+	public int getRowCount() {
+		switch ( getType() ) {
+			case WRITE_ROWS:
+			case EXT_WRITE_ROWS:
+				return writeRowsData().getRows().size();
+			case DELETE_ROWS:
+			case EXT_DELETE_ROWS:
+				return deleteRowsData().getRows().size();
+			case UPDATE_ROWS:
+			case EXT_UPDATE_ROWS:
+				return updateRowsData().getRows().size();
+			default:
+				return 0;
+		}
 	}
 
 	public List<RowMap> jsonMaps(Table table, long lastHeartbeatRead, String rowQuery) {
-		ArrayList<RowMap> list = new ArrayList<>();
+		return jsonMaps(table, new ColumnLayout(table.getColumnList()), lastHeartbeatRead, rowQuery, 0, getRowCount(), null);
+	}
+
+	/**
+	 * Build RowMaps for rows [fromRow, toRow) of this event.  Distinct ranges of the same
+	 * event may be converted concurrently.  Column values are left undecoded until read
+	 * (or until PipelinedRowConverter decodes them on its pool).
+	 *
+	 * `rowFilter` is run against each row's raw image before anything else is built, so
+	 * a rejected row costs only the decoding of the columns the filter looked at.
+	 *
+	 * @param layout the column layout of `table`
+	 * @param rowFilter decides which rows to keep, or null to keep them all
+	 */
+	public List<RowMap> jsonMaps(Table table, ColumnLayout layout, long lastHeartbeatRead, String rowQuery, int fromRow, int toRow, Predicate<Map<String, Object>> rowFilter) {
+		ArrayList<RowMap> list = new ArrayList<>(Math.max(toRow - fromRow, 0));
 
 		Position position     = Position.valueOf(this.position, lastHeartbeatRead);
 		Position nextPosition = Position.valueOf(this.nextPosition, lastHeartbeatRead);
@@ -180,24 +232,48 @@ public class BinlogConnectorEvent {
 		switch ( getType() ) {
 			case WRITE_ROWS:
 			case EXT_WRITE_ROWS:
-				for ( Serializable[] data : writeRowsData().getRows() ) {
-					list.add(buildRowMap("insert", position, nextPosition, data, table, writeRowsData().getIncludedColumns(), rowQuery));
+				for ( Serializable[] data : writeRowsData().getRows().subList(fromRow, toRow) ) {
+					ColumnValueMap values = new ColumnValueMap(layout);
+					writeData(layout, values, data, writeRowsData().getIncludedColumns());
+					if ( rowFilter != null && !rowFilter.test(values) )
+						continue;
+
+					RowMap r = buildRowMap("insert", position, nextPosition, table, rowQuery);
+					r.setData(values);
+					list.add(r);
 				}
 				break;
 			case DELETE_ROWS:
 			case EXT_DELETE_ROWS:
-				for ( Serializable[] data : deleteRowsData().getRows() ) {
-					list.add(buildRowMap("delete", position, nextPosition, data, table, deleteRowsData().getIncludedColumns(), rowQuery));
+				for ( Serializable[] data : deleteRowsData().getRows().subList(fromRow, toRow) ) {
+					ColumnValueMap values = new ColumnValueMap(layout);
+					writeData(layout, values, data, deleteRowsData().getIncludedColumns());
+					if ( rowFilter != null && !rowFilter.test(values) )
+						continue;
+
+					RowMap r = buildRowMap("delete", position, nextPosition, table, rowQuery);
+					r.setData(values);
+					list.add(r);
 				}
 				break;
 			case UPDATE_ROWS:
 			case EXT_UPDATE_ROWS:
-				for ( Map.Entry<Serializable[], Serializable[]> e : updateRowsData().getRows() ) {
+				for ( Map.Entry<Serializable[], Serializable[]> e : updateRowsData().getRows().subList(fromRow, toRow) ) {
 					Serializable[] data = e.getValue();
 					Serializable[] oldData = e.getKey();
 
-					RowMap r = buildRowMap("update", position, nextPosition, data, table, updateRowsData().getIncludedColumns(), rowQuery);
-					writeOldData(table, r, oldData, updateRowsData().getIncludedColumnsBeforeUpdate());
+					ColumnValueMap values = new ColumnValueMap(layout);
+					writeData(layout, values, data, updateRowsData().getIncludedColumns());
+					if ( rowFilter != null ) {
+						// under MINIMAL images the filter must see the columns that only the BEFORE image carries
+						mergeMinimalData(layout, values, oldData, updateRowsData().getIncludedColumnsBeforeUpdate());
+						if ( !rowFilter.test(values) )
+							continue;
+					}
+
+					RowMap r = buildRowMap("update", position, nextPosition, table, rowQuery);
+					writeOldData(layout, values, r, oldData, updateRowsData().getIncludedColumnsBeforeUpdate());
+					r.setData(values);
 					list.add(r);
 				}
 				break;
@@ -6,40 +6,83 @@ import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.Event;
 import com.github.shyiko.mysql.binlog.event.EventType;
 import com.github.shyiko.mysql.binlog.event.GtidEventData;
+import com.github.shyiko.mysql.binlog.event.QueryEventData;
 import com.zendesk.maxwell.monitoring.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 class BinlogConnectorEventListener implements BinaryLogClient.EventListener {
 	private static final Logger LOGGER = LoggerFactory.getLogger(BinlogConnectorEventListener.class);
 
-	private final BlockingQueue<BinlogConnectorEvent> queue;
+	private final BinlogEventQueue queue;
 	private final Timer queueTimer;
+	private final Timer queueStallTimer;
 	protected final AtomicBoolean mustStop = new AtomicBoolean(false);
 	private final BinaryLogClient client;
+	private final CatchUpMode catchUpMode;
 	private long replicationLag;
 	private String gtid;
+	private String gtidSetStr;
+	private boolean gtidSetStale = true;
 
 	public BinlogConnectorEventListener(
 		BinaryLogClient client,
-		BlockingQueue<BinlogConnectorEvent> q,
-		Metrics metrics) {
+		BinlogEventQueue q,
+		Metrics metrics,
+		CatchUpMode catchUpMode) {
 		this.client = client;
 		this.queue = q;
+		this.catchUpMode = catchUpMode;
 		this.queueTimer =  metrics.getRegistry().timer(metrics.metricName("replication", "queue", "time"));
+		this.queueStallTimer = metrics.getRegistry().timer(metrics.metricName("replication", "queue", "stall"));
 
 		final BinlogConnectorEventListener self = this;
 		metrics.register(metrics.metricName("replication", "lag"), (Gauge<Long>) () -> self.replicationLag);
+		metrics.register(metrics.metricName("replication", "queue", "depth"), (Gauge<Integer>) q::size);
+		metrics.register(metrics.metricName("replication", "queue", "bytes"), (Gauge<Long>) q::byteSize);
+		metrics.register(metrics.metricName("replication", "catchup"), (Gauge<Integer>) () -> catchUpMode.isActive() ? 1 : 0);
 	}
 
 	public void stop() {
 		mustStop.set(true);
 	}
 
+	/**
+	 * `client.getGtidSet()` formats the entire executed-gtid-set into a new string on every call,
+	 * which on a server with a long gtid history costs more than decoding a small row event.
+	 *
+	 * The client adds a transaction's gtid to its set before handing us the event that completes
+	 * it (XID, or a QUERY other than BEGIN: COMMIT, ROLLBACK or DDL), so we snapshot the set once
+	 * there, and the commit event's next-position -- the one that gets stored -- carries the new
+	 * set.  We also re-read it on ROTATE, which follows every (re)connect.  Every other event,
+	 * BEGIN included, shares the snapshot taken at the end of the previous transaction, which is
+	 * what the client would have returned for it anyway.
+	 */
+	private String getGtidSetStr(Event event) {
+		EventType eventType = event.getHeader().getEventType();
+
+		if ( gtidSetStale || eventType == EventType.ROTATE || completesTransaction(event) ) {
+			gtidSetStr = client.getGtidSet();
+			gtidSetStale = false;
+		}
+
+		return gtidSetStr;
+	}
+
+	private static boolean completesTransaction(Event event) {
+		switch ( event.getHeader().getEventType() ) {
+			case XID:
+				return true;
+			case QUERY:
+				return !BinlogConnectorEvent.BEGIN.equals(((QueryEventData) event.getData()).getSql());
+			default:
+				return false;
+		}
+	}
+
 	@Override
 	public void onEvent(Event event) {
 //		LOGGER.info("BinlogConnectorEventListener onEvent,event:{}",event.toString());
@@ -50,27 +93,36 @@ class BinlogConnectorEventListener implements BinaryLogClient.EventListener {
 		long eventSeenAt = 0;
 		boolean trackMetrics = false;
 
-		if (event.getHeader().getEventType() == EventType.GTID) {
+		EventType eventType = event.getHeader().getEventType();
+		if (eventType == EventType.GTID) {
 			gtid = ((GtidEventData)event.getData()).getGtid();
 		}
 
-		BinlogConnectorEvent ep = new BinlogConnectorEvent(event, client.getBinlogFilename(), client.getGtidSet(), gtid);
+		BinlogConnectorEvent ep = new BinlogConnectorEvent(event, client.getBinlogFilename(), getGtidSetStr(event), gtid);
 
 		if (ep.isCommitEvent()) {
 			trackMetrics = true;
 			eventSeenAt = System.currentTimeMillis();
 			replicationLag = eventSeenAt - event.getHeader().getTimestamp();
+
+			if ( catchUpMode.update(replicationLag) )
+				queue.setCatchUp(catchUpMode.isActive());
 		}
 
-		while (mustStop.get() != true) {
-			try {
-				if ( queue.offer(ep, 100, TimeUnit.MILLISECONDS ) ) {
-//					LOGGER.info("BinlogConnectorEventListener onEvent,queue:{},BinlogConnectorEvent:{}",queue.size(),ep.toString());
-					break;
+		if ( !queue.offer(ep) ) {
+			// the replicator is behind; time how long we hold up the network read.
+			long stallStart = System.nanoTime();
+			while (mustStop.get() != true) {
+				try {
+					if ( queue.offer(ep, 100, TimeUnit.MILLISECONDS ) ) {
+//						LOGGER.info("BinlogConnectorEventListener onEvent,queue:{},BinlogConnectorEvent:{}",queue.size(),ep.toString());
+						break;
+					}
+				} catch (InterruptedException e) {
+					return;
 				}
-			} catch (InterruptedException e) {
-				return;
 			}
+			queueStallTimer.update(System.nanoTime() - stallStart, TimeUnit.NANOSECONDS);
 		}
 
 		if (trackMetrics) {
@@ -1,6 +1,7 @@
 package com.zendesk.maxwell.replication;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.github.shyiko.mysql.binlog.BinaryLogClient;
@@ -13,7 +14,9 @@ import com.zendesk.maxwell.monitoring.Metrics;
 import com.zendesk.maxwell.producer.AbstractProducer;
 import com.zendesk.maxwell.row.HeartbeatRowMap;
 import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.RowBufferConfig;
 import com.zendesk.maxwell.row.RowMapBuffer;
+import com.zendesk.maxwell.row.TransactionCommitRowMap;
 import com.zendesk.maxwell.schema.Schema;
 import com.zendesk.maxwell.schema.SchemaStore;
 import com.zendesk.maxwell.schema.SchemaStoreException;
@@ -21,16 +24,18 @@ import com.zendesk.maxwell.schema.Table;
 import com.zendesk.maxwell.schema.ddl.DDLMap;
 import com.zendesk.maxwell.schema.ddl.ResolvedSchemaChange;
 import com.zendesk.maxwell.scripting.Scripting;
+import com.zendesk.maxwell.util.OffHeapPool;
 import com.zendesk.maxwell.util.RunLoopProcess;
+import com.zendesk.maxwell.util.SpillPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 public class BinlogConnectorReplicator extends RunLoopProcess implements Replicator {
@@ -43,9 +48,10 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 	private final BinaryLogClient client;
 	private BinlogConnectorEventListener binlogEventListener;
 	private BinlogConnectorLifecycleListener binlogLifecycleListener;
-	private final LinkedBlockingDeque<BinlogConnectorEvent> queue = new LinkedBlockingDeque<>(20);
+	private final BinlogEventQueue queue;
 	private final TableCache tableCache;
 	private final Scripting scripting;
+	private final PipelinedRowConverter rowConverter;
 
 	private final boolean stopOnEOF;
 	private boolean hitEOF = false;
@@ -57,7 +63,14 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 
 	private final AbstractBootstrapper bootstrapper;
 	private final AbstractProducer producer;
-	private RowMapBuffer rowBuffer;
+	private volatile RowMapBuffer rowBuffer; // also read by the buffer gauges
+	private final RowBufferConfig bufferConfig;
+	private final OffHeapPool offHeapPool;
+	private final SpillPool spillPool;
+	private String currentQuery;
+
+	private final boolean streamTransactions;
+	private StreamedTransaction streamedTransaction;
 
 	private final Counter rowCounter;
 	private final Meter rowMeter;
@@ -89,6 +102,25 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 		String clientID,
 		HeartbeatNotifier heartbeatNotifier,
 		Scripting scripting
+	) {
+		this(schemaStore, producer, bootstrapper, mysqlConfig, replicaServerID, maxwellSchemaDatabaseName,
+			metrics, start, stopOnEOF, clientID, heartbeatNotifier, scripting, new ReplicatorConfig());
+	}
+
+	public BinlogConnectorReplicator(
+		SchemaStore schemaStore,
+		AbstractProducer producer,
+		AbstractBootstrapper bootstrapper,
+		MaxwellMysqlConfig mysqlConfig,
+		Long replicaServerID,
+		String maxwellSchemaDatabaseName,
+		Metrics metrics,
+		Position start,
+		boolean stopOnEOF,
+		String clientID,
+		HeartbeatNotifier heartbeatNotifier,
+		Scripting scripting,
+		ReplicatorConfig replicatorConfig
 	) {
 		this.clientID = clientID;
 		this.bootstrapper = bootstrapper;
@@ -100,6 +132,16 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 		this.scripting = scripting;
 		this.schemaStore = schemaStore;
 		this.tableCache = new TableCache(maxwellSchemaDatabaseName);
+		this.rowConverter = new PipelinedRowConverter(
+			replicatorConfig.rowConversionThreads,
+			replicatorConfig.rowConversionChunkSize,
+			replicatorConfig.rowConversionPool
+		);
+		this.streamTransactions = replicatorConfig.streamTransactions;
+		this.queue = new BinlogEventQueue(replicatorConfig.binlogEventQueueSize, replicatorConfig.binlogEventQueueMaxBytes);
+		this.bufferConfig = replicatorConfig.bufferConfig;
+		this.offHeapPool = bufferConfig.offHeapBytes > 0 ? new OffHeapPool(bufferConfig.offHeapBytes) : null;
+		this.spillPool = bufferConfig.buildSpillPool();
 
 		/* setup metrics */
 		rowCounter = metrics.getRegistry().counter(
@@ -113,6 +155,25 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 		transactionRowCount = metrics.getRegistry().histogram(metrics.metricName("transaction", "row_count"));
 		transactionExecutionTime = metrics.getRegistry().histogram(metrics.metricName("transaction", "execution_time"));
 
+		metrics.register(metrics.metricName("replication", "buffer", "bytes"), (Gauge<Long>) () -> {
+			RowMapBuffer b = rowBuffer;
+			return b == null ? 0L : b.getMemorySize();
+		});
+		metrics.register(metrics.metricName("replication", "buffer", "spilled"), (Gauge<Long>) () -> {
+			RowMapBuffer b = rowBuffer;
+			return b == null ? 0L : b.size() - b.inMemorySize();
+		});
+		metrics.register(metrics.metricName("replication", "buffer", "off_heap_bytes"), (Gauge<Long>) () ->
+			offHeapPool == null ? 0L : offHeapPool.getBytesInUse()
+		);
+		metrics.register(metrics.metricName("replication", "buffer", "disk_bytes"), (Gauge<Long>) () -> {
+			RowMapBuffer b = rowBuffer;
+			return b == null ? 0L : b.spilledBytes();
+		});
+		metrics.register(metrics.metricName("replication", "buffer", "spill_bytes_written"), (Gauge<Long>) spillPool::getBytesWritten);
+		metrics.register(metrics.metricName("replication", "buffer", "spill_bytes_read"), (Gauge<Long>) spillPool::getBytesRead);
+		metrics.register(metrics.metricName("replication", "buffer", "spill_time"), (Gauge<Long>) spillPool::getSpillTimeMillis);
+
 		this.binlogLifecycleListener = new BinlogConnectorLifecycleListener();
 		/** setup binlog */
 		this.client = new BinaryLogClient(mysqlConfig.replicationHost, mysqlConfig.replicationPort, mysqlConfig.replicationUser, mysqlConfig.replicationPassword);
@@ -137,7 +198,12 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 			EventDeserializer.CompatibilityMode.INVALID_DATE_AND_TIME_AS_MIN_VALUE
 		);
 		this.client.setEventDeserializer(eventDeserializer);
-		this.binlogEventListener = new BinlogConnectorEventListener(client, queue, metrics);
+		this.binlogEventListener = new BinlogConnectorEventListener(
+			client,
+			queue,
+			metrics,
+			replicatorConfig.catchUpMode == null ? new CatchUpMode(0) : replicatorConfig.catchUpMode
+		);
 		this.client.setBlocking(!stopOnEOF);
 		this.client.registerEventListener(binlogEventListener);
 		this.client.registerLifecycleListener(binlogLifecycleListener);//生命周期侦听器注册。请注意，将按注册的顺序调用多个生命周期侦听器
@@ -172,6 +238,7 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 
 	@Override
 	protected void beforeStart() throws Exception {
+		spillPool.preallocate();
 		startReplicator();
 	}
 
@@ -179,6 +246,8 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 	protected void beforeStop() throws Exception {
 		this.binlogEventListener.stop();
 		this.client.disconnect();
+		this.rowConverter.shutdown();
+		this.spillPool.close();
 	}
 
 	/**
@@ -272,7 +341,7 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 			}
 		}
 
-		tableCache.clear();
+		tableCache.invalidate(changes);
 	}
 
 	private void processQueryEvent(BinlogConnectorEvent event) throws Exception {
@@ -288,44 +357,20 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 	}
 
 	/**
-	 * Should we output a batch of rows for the given database and table?
-	 *
-	 * First against a whitelist/blacklist/filter.  The whitelist
-	 * ensures events that maxwell needs (maxwell.bootstrap, maxwell.heartbeats)
-	 * are always passed along.
-	 *
-	 * The system the blacklist gets rid of the
-	 * `ha_health_check` and `rds_heartbeat` tables which are weird
-	 * replication-control mechanism events in Alibaba RDS (and maybe amazon?)
+	 * Turn a range of a rows-event into filtered RowMaps.  May run on a row-converter thread,
+	 * so it must only touch state captured when the event was read.
 	 *
-	 * Then we check the configured filters.
-	 *
-	 * Finall, if we decide to exclude a table we check the filter to
-	 * see if it's possible that a column-value filter could reverse this decision
-	 *
-	 * @param database The database of the DML
-	 * @param table The table of the DML
-	 * @param filter A table-filter, or null
-	 * @param columnNames Names of the columns this table contains
-	 * @return Whether we should write the event to the producer
+	 * Value filters are evaluated on each row's raw image, before its RowMap is built; only
+	 * the filtered columns get decoded for rows that are thrown away.
 	 */
-	private boolean shouldOutputEvent(String database, String table, Filter filter, Set<String> columnNames) {
-		if ( Filter.isSystemBlacklisted(database, table) )
-			return false;
-		else if ( Filter.isSystemWhitelisted(maxwellSchemaDatabaseName, database, table) )
-			return true;
-		else {
-			if ( Filter.includes(filter, database, table) )
-				return true;
-			else
-				return Filter.couldIncludeFromColumnFilters(filter, database, table, columnNames);
-		}
-	}
+	private List<RowMap> convertRows(BinlogConnectorEvent event, TableMapping mapping, long lastHeartbeatRead, String rowQuery, int fromRow, int toRow) {
+		Table table = mapping.tableDef;
+		Predicate<Map<String, Object>> rowFilter = null;
 
+		if ( mapping.filterValues )
+			rowFilter = values -> Filter.includes(filter, table.getDatabase(), table.getName(), values);
 
-	private boolean shouldOutputRowMap(String database, String table, RowMap rowMap, Filter filter) {
-		return Filter.isSystemWhitelisted(maxwellSchemaDatabaseName, database, table) ||
-			Filter.includes(filter, database, table, rowMap.getData());
+		return event.jsonMaps(table, mapping.layout, lastHeartbeatRead, rowQuery, fromRow, toRow, rowFilter);
 	}
 
 	/**
@@ -365,9 +410,10 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 	private RowMapBuffer getTransactionRows(BinlogConnectorEvent beginEvent) throws Exception {
 //		LOGGER.info("getTransactionRows-->ensureReplicatorThread-->beginEvent:{}",null==beginEvent.getEvent() ? "null":beginEvent.getEvent().getData());
 		BinlogConnectorEvent event;
-		RowMapBuffer buffer = new RowMapBuffer(MAX_TX_ELEMENTS);
+		RowMapBuffer buffer = new RowMapBuffer(MAX_TX_ELEMENTS, bufferConfig.heapBytes, spillPool, offHeapPool);
+		rowBuffer = buffer;
 
-		String currentQuery = null;
+		currentQuery = null;
 
 		while ( true ) {
 			event = pollEvent();
@@ -377,74 +423,167 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 				continue;
 			}
 
-			EventType eventType = event.getEvent().getHeader().getEventType();
-			if (event.isCommitEvent()) {
+			if ( processTransactionEvent(event, buffer) ) {
 				if (!buffer.isEmpty()) {
 					buffer.getLast().setTXCommit();
 					long timeSpent = buffer.getLast().getTimestampMillis() - beginEvent.getEvent().getHeader().getTimestamp();
 					transactionExecutionTime.update(timeSpent);
 					transactionRowCount.update(buffer.size());
 				}
-				if(eventType == EventType.XID) {
+				if(event.getType() == EventType.XID) {
 					buffer.setXid(event.xidData().getXid());
 				}
 				return buffer;
 			}
+		}
+	}
 
-			switch(eventType) {
-				case WRITE_ROWS:
-				case UPDATE_ROWS:
-				case DELETE_ROWS:
-				case EXT_WRITE_ROWS:
-				case EXT_UPDATE_ROWS:
-				case EXT_DELETE_ROWS:
-					Table table = tableCache.getTable(event.getTableID());
+	/**
+	 * Process a single event from inside a transaction, adding any rows it
+	 * produces to `buffer`.
+	 *
+	 * @return true if the event ended the transaction.  By then every row of the
+	 *         transaction has been added to `buffer`.
+	 */
+	private boolean processTransactionEvent(BinlogConnectorEvent event, RowMapBuffer buffer) throws Exception {
+		EventType eventType = event.getEvent().getHeader().getEventType();
+		if (event.isCommitEvent()) {
+			rowConverter.drain(buffer);
+			return true;
+		}
 
-					if ( table != null && shouldOutputEvent(table.getDatabase(), table.getName(), filter, table.getColumnNames()) ) {
-						for ( RowMap r : event.jsonMaps(table, getLastHeartbeatRead(), currentQuery) )
-							if (shouldOutputRowMap(table.getDatabase(), table.getName(), r, filter)) {
-								buffer.add(r);
-							}
-					}
-					currentQuery = null;
-					break;
-				case TABLE_MAP:
-					TableMapEventData data = event.tableMapData();
-					tableCache.processEvent(getSchema(), this.filter, data.getTableId(), data.getDatabase(), data.getTable());
-					break;
-				case ROWS_QUERY:
-					RowsQueryEventData rqed = event.getEvent().getData();
-					currentQuery = rqed.getQuery();
-					break;
-				case QUERY:
-					QueryEventData qe = event.queryData();
-					String sql = qe.getSql();
-					String upperCaseSql = sql.toUpperCase();
-
-					if ( upperCaseSql.startsWith(BinlogConnectorEvent.SAVEPOINT)) {
-						LOGGER.debug("Ignoring SAVEPOINT in transaction: " + qe);
-					} else if ( createTablePattern.matcher(sql).find() ) {
-						// CREATE TABLE `foo` SELECT * FROM `bar` will put a CREATE TABLE
-						// inside a transaction.  Note that this could, in rare cases, lead
-						// to us starting on a WRITE_ROWS event -- we sync the schema position somewhere
-						// kinda unsafe.
-						processQueryEvent(event);
-					} else if (upperCaseSql.startsWith("INSERT INTO MYSQL.RDS_") || upperCaseSql.startsWith("DELETE FROM MYSQL.RDS_")) {
-						// RDS heartbeat events take the following form:
-						// INSERT INTO mysql.rds_heartbeat2(id, value) values (1,1483041015005) ON DUPLICATE KEY UPDATE value = 1483041015005
+		switch(eventType) {
+			case WRITE_ROWS:
+			case UPDATE_ROWS:
+			case DELETE_ROWS:
+			case EXT_WRITE_ROWS:
+			case EXT_UPDATE_ROWS:
+			case EXT_DELETE_ROWS:
+				TableMapping mapping = tableCache.getMapping(event.getTableID());
+
+				if ( mapping != null && mapping.output ) {
+					final long lastHeartbeatRead = getLastHeartbeatRead();
+					final String rowQuery = currentQuery;
+					rowConverter.convert(buffer, event.getRowCount(), (fromRow, toRow) ->
+						convertRows(event, mapping, lastHeartbeatRead, rowQuery, fromRow, toRow)
+					);
+				}
+				currentQuery = null;
+				break;
+			case TABLE_MAP:
+				TableMapEventData data = event.tableMapData();
+				tableCache.processEvent(getSchema(), this.filter, data.getTableId(), data.getDatabase(), data.getTable());
+				break;
+			case ROWS_QUERY:
+				RowsQueryEventData rqed = event.getEvent().getData();
+				currentQuery = rqed.getQuery();
+				break;
+			case QUERY:
+				QueryEventData qe = event.queryData();
+				String sql = qe.getSql();
+				String upperCaseSql = sql.toUpperCase();
+
+				if ( upperCaseSql.startsWith(BinlogConnectorEvent.SAVEPOINT)) {
+					LOGGER.debug("Ignoring SAVEPOINT in transaction: " + qe);
+				} else if ( createTablePattern.matcher(sql).find() ) {
+					// CREATE TABLE `foo` SELECT * FROM `bar` will put a CREATE TABLE
+					// inside a transaction.  Note that this could, in rare cases, lead
+					// to us starting on a WRITE_ROWS event -- we sync the schema position somewhere
+					// kinda unsafe.
+					processQueryEvent(event);
+				} else if (upperCaseSql.startsWith("INSERT INTO MYSQL.RDS_") || upperCaseSql.startsWith("DELETE FROM MYSQL.RDS_")) {
+					// RDS heartbeat events take the following form:
+					// INSERT INTO mysql.rds_heartbeat2(id, value) values (1,1483041015005) ON DUPLICATE KEY UPDATE value = 1483041015005
+
+					// Other RDS internal events like below:
+					// INSERT INTO mysql.rds_sysinfo(name, value) values ('innodb_txn_key','Thu Nov 15 10:30:07 UTC 2018')
+					// DELETE FROM mysql.rds_sysinfo where name = 'innodb_txn_key'
+
+					// We don't need to process them, just ignore
+				} else if (upperCaseSql.startsWith("DROP TEMPORARY TABLE")) {
+					// Ignore temporary table drop statements inside transactions
+				} else {
+					LOGGER.warn("Unhandled QueryEvent @ {} inside transaction: {}", event.getPosition().fullPosition(), qe);
+				}
+				break;
+		}
+		return false;
+	}
 
-						// Other RDS internal events like below:
-						// INSERT INTO mysql.rds_sysinfo(name, value) values ('innodb_txn_key','Thu Nov 15 10:30:07 UTC 2018')
-						// DELETE FROM mysql.rds_sysinfo where name = 'innodb_txn_key'
+	/**
+	 * Start a transaction.  Normally we read the whole transaction into `rowBuffer` right here;
+	 * with `stream_transactions` we instead hand rows out of `getRow` as they are read.
+	 */
+	private void beginTransaction(BinlogConnectorEvent beginEvent, Long serverId, Long threadId) throws Exception {
+		if ( rowBuffer != null )
+			rowBuffer.close(); // normally drained already, which gave back its spill file
+
+		if ( streamTransactions ) {
+			rowBuffer = new RowMapBuffer(MAX_TX_ELEMENTS, bufferConfig.heapBytes, spillPool, offHeapPool);
+			currentQuery = null;
+			streamedTransaction = new StreamedTransaction(beginEvent);
+		} else {
+			rowBuffer = getTransactionRows(beginEvent);
+		}
 
-						// We don't need to process them, just ignore
-					} else if (upperCaseSql.startsWith("DROP TEMPORARY TABLE")) {
-						// Ignore temporary table drop statements inside transactions
-					} else {
-						LOGGER.warn("Unhandled QueryEvent @ {} inside transaction: {}", event.getPosition().fullPosition(), qe);
-					}
-					break;
+		if ( serverId != null ) {
+			rowBuffer.setServerId(serverId);
+			rowBuffer.setThreadId(threadId);
+			rowBuffer.setSchemaId(getSchemaId());
+		}
+	}
+
+	/**
+	 * Read the next event of a streamed transaction.  Rows land in `rowBuffer`
+	 * for `getRow` to hand out; once COMMIT is seen and the last row has gone out,
+	 * a commit marker carrying the xid is queued.
+	 *
+	 * @return false if no event was available
+	 */
+	private boolean streamTransactionEvent() throws Exception {
+		StreamedTransaction tx = streamedTransaction;
+
+		if ( tx.commitEvent != null ) {
+			streamedTransaction = null;
+			if ( tx.lastRow != null ) {
+				transactionExecutionTime.update(tx.lastRow.getTimestampMillis() - tx.beginEvent.getEvent().getHeader().getTimestamp());
+				transactionRowCount.update(tx.rowCount);
+
+				if ( tx.commitEvent.getType() == EventType.XID )
+					rowBuffer.setXid(tx.commitEvent.xidData().getXid());
+
+				rowBuffer.add(new TransactionCommitRowMap(
+					tx.lastRow.getDatabase(),
+					tx.lastRow.getTable(),
+					tx.commitEvent.getEvent().getHeader().getTimestamp(),
+					Position.valueOf(tx.commitEvent.getPosition(), getLastHeartbeatRead()),
+					Position.valueOf(tx.commitEvent.getNextPosition(), getLastHeartbeatRead())
+				));
 			}
+			return true;
+		}
+
+		BinlogConnectorEvent event = pollEvent();
+		if ( event == null ) {
+			rowConverter.drainCompleted(rowBuffer);
+			return !rowBuffer.isEmpty();
+		}
+
+		if ( processTransactionEvent(event, rowBuffer) )
+			tx.commitEvent = event;
+		else
+			rowConverter.drainCompleted(rowBuffer);
+		return true;
+	}
+
+	private static class StreamedTransaction {
+		final BinlogConnectorEvent beginEvent;
+		BinlogConnectorEvent commitEvent;
+		RowMap lastRow;
+		long rowCount;
+
+		StreamedTransaction(BinlogConnectorEvent beginEvent) {
+			this.beginEvent = beginEvent;
 		}
 	}
 
@@ -470,8 +609,20 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 //				LOGGER.info("00,getRow-->rowBuffer-->row:{}",null==row?"":row.toString());
 				if ( row != null && isMaxwellRow(row) && row.getTable().equals("heartbeats") )
 					return processHeartbeats(row);
-				else
-					return row;
+
+				if ( streamedTransaction != null && row != null && !isMaxwellRow(row) ) {
+					streamedTransaction.lastRow = row;
+					streamedTransaction.rowCount++;
+				}
+				return row;
+			}
+
+			if ( streamedTransaction != null ) {
+				if ( !streamTransactionEvent() ) {
+					ensureReplicatorThread();
+					return null;
+				}
+				continue;
 			}
 
 			event = pollEvent();
@@ -499,8 +650,8 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 					LOGGER.warn("Started replication stream inside a transaction.  This shouldn't normally happen.");
 					LOGGER.warn("Assuming new transaction at unexpected event:" + event);
 
-					queue.offerFirst(event);//队头添加
-					rowBuffer = getTransactionRows(event);
+					queue.pushBack(event);//队头添加
+					beginTransaction(event, null, null);
 //					LOGGER.info("3,getRow-->getTransactionRows-->event:{}",null==event ? "one null" : null==event.getEvent()? "two null": event.getEvent().getData());
 					break;
 				case TABLE_MAP:
@@ -512,10 +663,7 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 					QueryEventData qe = event.queryData();
 					String sql = qe.getSql();
 					if (BinlogConnectorEvent.BEGIN.equals(sql)) {
-						rowBuffer = getTransactionRows(event);
-						rowBuffer.setServerId(event.getEvent().getHeader().getServerId());
-						rowBuffer.setThreadId(qe.getThreadId());
-						rowBuffer.setSchemaId(getSchemaId());
+						beginTransaction(event, event.getEvent().getHeader().getServerId(), qe.getThreadId());
 //						LOGGER.info("5,getRow--> rowBuffer-->rowBuffer:{}",rowBuffer.toString());
 					} else {
 //						LOGGER.info("6,getRow-->processQueryEvent-->event:{}",null==event ? "one null" : null==event.getEvent()? "two null": event.getEvent().getData());
@@ -523,7 +671,6 @@ public class BinlogConnectorReplicator extends RunLoopProcess implements Replica
 					}
 					break;
 				case ROTATE:
-					tableCache.clear();
 					if ( stopOnEOF && event.getPosition().getOffset() > 0 ) {
 						this.binlogEventListener.mustStop.set(true);
 						this.client.disconnect();
@@ -0,0 +1,212 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.EventHeaderV4;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hand-off between the binlog-connector thread (the only producer) and the
+ * replicator thread (the only consumer).
+ *
+ * A lock-free single-producer/single-consumer ring buffer, bounded both by a
+ * number of events and by the total on-the-wire size of the events it holds.
+ * The byte bound makes the effective depth adapt to the workload: lots of small
+ * events can queue up to absorb a burst, while a run of huge row events is
+ * held to a sane amount of memory.  A single event larger than the byte bound
+ * is still accepted when the queue is empty, so nothing can wedge.
+ *
+ * In catch-up mode both bounds are raised by CATCHUP_FACTOR, letting the reader
+ * run further ahead of a replicator that's working through a backlog.
+ *
+ * A waiting side parks rather than spins, and is unparked by the other side.
+ */
+class BinlogEventQueue {
+	// upper bound on a single park, in case an unpark races past us
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	static final int CATCHUP_FACTOR = 4;
+
+	private final BinlogConnectorEvent[] ring;
+	private final int mask;
+	private final int baseCapacity;
+	private final long baseMaxBytes;
+	private volatile int capacity;
+	private volatile long maxBytes;
+
+	private volatile long head = 0; // next slot to read; written only by the consumer
+	private volatile long tail = 0; // next slot to write; written only by the producer
+	private final AtomicLong bytes = new AtomicLong(0);
+
+	private volatile Thread waitingConsumer;
+	private volatile Thread waitingProducer;
+
+	// an event the consumer has put back; touched only by the consumer
+	private BinlogConnectorEvent pushedBack;
+
+	/**
+	 * @param capacity maximum number of queued events
+	 * @param maxBytes maximum total size of queued events, or 0 for no limit
+	 */
+	BinlogEventQueue(int capacity, long maxBytes) {
+		if ( capacity < 1 )
+			throw new IllegalArgumentException("capacity must be at least 1");
+
+		this.baseCapacity = capacity;
+		this.baseMaxBytes = maxBytes;
+		this.capacity = capacity;
+		this.maxBytes = maxBytes;
+
+		// sized up front for catch-up mode; it's only an array of references
+		int maxCapacity = catchUpCapacity();
+		int ringSize = Integer.highestOneBit(maxCapacity);
+		if ( ringSize < maxCapacity )
+			ringSize <<= 1;
+
+		this.ring = new BinlogConnectorEvent[ringSize];
+		this.mask = ringSize - 1;
+	}
+
+	private int catchUpCapacity() {
+		return (int) Math.min((long) baseCapacity * CATCHUP_FACTOR, 1 << 30);
+	}
+
+	/**
+	 * Switch between the configured bounds and the larger catch-up bounds.  Events
+	 * already queued beyond the normal bounds stay; the producer just waits for them
+	 * to drain.
+	 */
+	public void setCatchUp(boolean catchUp) {
+		if ( catchUp ) {
+			this.capacity = catchUpCapacity();
+			this.maxBytes = baseMaxBytes * CATCHUP_FACTOR;
+		} else {
+			this.capacity = baseCapacity;
+			this.maxBytes = baseMaxBytes;
+		}
+		// wake a waiting producer so it sees the new bounds
+		Thread producer = waitingProducer;
+		if ( producer != null )
+			LockSupport.unpark(producer);
+	}
+
+	static long sizeOf(BinlogConnectorEvent event) {
+		EventHeader header = event.getEvent().getHeader();
+		if ( header instanceof EventHeaderV4 )
+			return ((EventHeaderV4) header).getEventLength();
+		return 0;
+	}
+
+	private boolean hasRoomFor(long eventSize) {
+		long t = tail, h = head;
+		if ( t - h >= capacity )
+			return false;
+		return maxBytes <= 0 || t == h || bytes.get() + eventSize <= maxBytes;
+	}
+
+	/**
+	 * Producer side.  Enqueue without waiting.
+	 * @return false if the queue is full
+	 */
+	public boolean offer(BinlogConnectorEvent event) {
+		long size = sizeOf(event);
+		if ( !hasRoomFor(size) )
+			return false;
+
+		enqueue(event, size);
+		return true;
+	}
+
+	/**
+	 * Producer side.  Enqueue, waiting up to `timeout` for room.
+	 * @return false if the queue stayed full for the whole timeout
+	 */
+	public boolean offer(BinlogConnectorEvent event, long timeout, TimeUnit unit) throws InterruptedException {
+		long size = sizeOf(event);
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		while ( !hasRoomFor(size) ) {
+			long remaining = deadline - System.nanoTime();
+			if ( remaining <= 0 )
+				return false;
+
+			waitingProducer = Thread.currentThread();
+			if ( !hasRoomFor(size) )
+				LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+			waitingProducer = null;
+
+			if ( Thread.interrupted() )
+				throw new InterruptedException();
+		}
+
+		enqueue(event, size);
+		return true;
+	}
+
+	private void enqueue(BinlogConnectorEvent event, long size) {
+		long t = tail;
+		ring[(int) (t & mask)] = event;
+		bytes.addAndGet(size);
+		tail = t + 1; // publishes the slot to the consumer
+
+		Thread consumer = waitingConsumer;
+		if ( consumer != null )
+			LockSupport.unpark(consumer);
+	}
+
+	/**
+	 * Consumer side.  Dequeue, waiting up to `timeout` for an event.
+	 * @return the next event, or null on timeout
+	 */
+	public BinlogConnectorEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if ( pushedBack != null ) {
+			BinlogConnectorEvent e = pushedBack;
+			pushedBack = null;
+			return e;
+		}
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while ( head == tail ) {
+			long remaining = deadline - System.nanoTime();
+			if ( remaining <= 0 )
+				return null;
+
+			waitingConsumer = Thread.currentThread();
+			if ( head == tail )
+				LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+			waitingConsumer = null;
+
+			if ( Thread.interrupted() )
+				throw new InterruptedException();
+		}
+
+		long h = head;
+		int slot = (int) (h & mask);
+		BinlogConnectorEvent event = ring[slot];
+		ring[slot] = null;
+		bytes.addAndGet(-sizeOf(event));
+		head = h + 1; // frees the slot for the producer
+
+		Thread producer = waitingProducer;
+		if ( producer != null )
+			LockSupport.unpark(producer);
+
+		return event;
+	}
+
+	/**
+	 * Consumer side.  Put an event back so the next poll returns it again.
+	 */
+	public void pushBack(BinlogConnectorEvent event) {
+		this.pushedBack = event;
+	}
+
+	public int size() {
+		return (int) (tail - head);
+	}
+
+	public long byteSize() {
+		return bytes.get();
+	}
+}
@@ -0,0 +1,53 @@
+package com.zendesk.maxwell.replication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks whether maxwell is far enough behind the master that it should favour
+ * throughput over latency.
+ *
+ * Maxwell enters catch-up mode when replication lag, as measured at each commit,
+ * goes over `catchup_lag_threshold`, and leaves it once lag has fallen below half
+ * of that.  While catching up the binlog read-ahead queue is allowed to grow,
+ * binlog positions are stored less often and the kafka producer sends rows in
+ * bigger batches; see BinlogEventQueue, PositionStoreThread and MaxwellKafkaProducer.
+ */
+public class CatchUpMode {
+	static final Logger LOGGER = LoggerFactory.getLogger(CatchUpMode.class);
+
+	private final long lagThreshold;
+	private volatile boolean active;
+
+	/**
+	 * @param lagThreshold replication lag, in milliseconds, that triggers catch-up mode.  0 disables it.
+	 */
+	public CatchUpMode(long lagThreshold) {
+		this.lagThreshold = lagThreshold;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Feed in the current replication lag.
+	 * @return true if this switched maxwell into or out of catch-up mode
+	 */
+	public boolean update(long lag) {
+		if ( lagThreshold <= 0 )
+			return false;
+
+		if ( !active && lag > lagThreshold ) {
+			LOGGER.info("replication is " + lag + "ms behind, switching to catch-up mode");
+			active = true;
+			return true;
+		} else if ( active && lag < lagThreshold / 2 ) {
+			LOGGER.info("replication has caught up (" + lag + "ms behind), leaving catch-up mode");
+			active = false;
+			return true;
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,155 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.row.RowMap;
+import com.zendesk.maxwell.row.RowMapBuffer;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Converts binlog row events into RowMaps.
+ *
+ * With zero threads conversion happens inline on the replicator thread, which is
+ * the historical behavior.  Otherwise each rows-event is handed to a ForkJoin pool
+ * while the replicator goes back to reading the binlog.  Events carrying more than
+ * `chunkSize` rows (bulk updates, backfills) are further cut into row ranges so
+ * that a single giant event is spread over every worker.
+ *
+ * Rows come out of a rows-event with their column values undecoded, to be decoded
+ * when they're first read.  On the pool, rows are decoded as part of the chunk's
+ * task, so the decoding -- most of the work of conversion -- is spread over the
+ * workers too, instead of landing on the replicator or the producer later.
+ *
+ * Results are collected strictly in submission order, so the RowMapBuffer (and the
+ * producer behind it) sees rows in exactly the order they appear in the binlog.
+ * Finished chunks at the head of the line are moved into the buffer as soon as
+ * they're ready rather than at COMMIT.
+ *
+ * An instance is only ever driven from the replicator thread.  In multi-source mode
+ * the replicators of all sources hand their work to one shared pool.
+ */
+public class PipelinedRowConverter {
+	private static final int MAX_PENDING_PER_THREAD = 4;
+
+	public interface RowRangeConversion {
+		List<RowMap> convert(int fromRow, int toRow);
+	}
+
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final int chunkSize;
+	private final int maxPending;
+	private final LinkedList<Future<List<RowMap>>> pending = new LinkedList<>();
+
+	public PipelinedRowConverter(int threads, int chunkSize) {
+		this(threads, chunkSize, null);
+	}
+
+	/**
+	 * @param sharedPool a pool owned by someone else to convert on, or null to create our
+	 *                   own with `threads` threads
+	 */
+	public PipelinedRowConverter(int threads, int chunkSize, ForkJoinPool sharedPool) {
+		this.chunkSize = chunkSize;
+		if ( sharedPool != null ) {
+			this.pool = sharedPool;
+			this.ownsPool = false;
+		} else {
+			this.pool = threads > 0 ? createPool(threads) : null;
+			this.ownsPool = true;
+		}
+		this.maxPending = pool == null ? 0 : pool.getParallelism() * MAX_PENDING_PER_THREAD;
+	}
+
+	public static ForkJoinPool createPool(int threads) {
+		return new ForkJoinPool(threads, new ConverterThreadFactory(), null, false);
+	}
+
+	/**
+	 * Convert the `rowCount` rows of an event, appending them to `buffer` once they
+	 * (and everything submitted before them) are ready.  Blocks only when too many
+	 * chunks are in flight.
+	 */
+	public void convert(RowMapBuffer buffer, int rowCount, RowRangeConversion conversion) throws Exception {
+		if ( pool == null ) {
+			addAll(buffer, conversion.convert(0, rowCount));
+			return;
+		}
+
+		for ( int from = 0; from < rowCount; from += chunkSize ) {
+			final int fromRow = from;
+			final int toRow = Math.min(from + chunkSize, rowCount);
+
+			pending.add(pool.submit(() -> decode(conversion.convert(fromRow, toRow))));
+
+			drainCompleted(buffer);
+			while ( pending.size() > maxPending )
+				addAll(buffer, await(pending.removeFirst()));
+		}
+	}
+
+	/**
+	 * Move any chunks that have already finished converting into the buffer,
+	 * stopping at the first one still in progress so that order is preserved.
+	 */
+	public void drainCompleted(RowMapBuffer buffer) throws Exception {
+		while ( !pending.isEmpty() && pending.getFirst().isDone() )
+			addAll(buffer, await(pending.removeFirst()));
+	}
+
+	/**
+	 * Wait for every outstanding chunk and append it to the buffer.  Called at COMMIT.
+	 */
+	public void drain(RowMapBuffer buffer) throws Exception {
+		while ( !pending.isEmpty() )
+			addAll(buffer, await(pending.removeFirst()));
+	}
+
+	public void shutdown() {
+		cancelPending();
+
+		if ( pool != null && ownsPool )
+			pool.shutdownNow();
+	}
+
+	private void cancelPending() {
+		for ( Future<List<RowMap>> f : pending )
+			f.cancel(true);
+		pending.clear();
+	}
+
+	private static List<RowMap> decode(List<RowMap> rows) {
+		for ( RowMap r : rows )
+			r.decodeData();
+		return rows;
+	}
+
+	private void addAll(RowMapBuffer buffer, List<RowMap> rows) throws Exception {
+		for ( RowMap r : rows )
+			buffer.add(r);
+	}
+
+	private List<RowMap> await(Future<List<RowMap>> future) throws Exception {
+		try {
+			return future.get();
+		} catch ( ExecutionException e ) {
+			// don't leave the rest of the transaction converting in the background
+			cancelPending();
+
+			Throwable cause = e.getCause();
+			if ( cause instanceof Exception )
+				throw (Exception) cause;
+			throw e;
+		}
+	}
+
+	private static class ConverterThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			t.setName("maxwell-row-converter-" + t.getPoolIndex());
+			return t;
+		}
+	}
+}
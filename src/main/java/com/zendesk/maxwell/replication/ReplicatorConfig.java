@@ -0,0 +1,32 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.row.RowBufferConfig;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*
+   tuning for a BinlogConnectorReplicator.  The defaults convert rows on the
+   replicator thread, buffer whole transactions, and never enter catch-up mode,
+   which is all a replicator that just scans the binlog (see Recovery) needs.
+ */
+public class ReplicatorConfig {
+	public int rowConversionThreads;       // 0 converts rows on the replicator thread
+	public int rowConversionChunkSize;     // rows per conversion task
+	public ForkJoinPool rowConversionPool; // shared between sources in multi-source mode; null to use our own
+	public boolean streamTransactions;     // send rows before their transaction commits
+	public int binlogEventQueueSize;       // events read ahead of the replicator
+	public long binlogEventQueueMaxBytes;  // 0 for no limit
+	public RowBufferConfig bufferConfig;
+	public CatchUpMode catchUpMode;        // null for never
+
+	public ReplicatorConfig() {
+		this.rowConversionThreads = 0;
+		this.rowConversionChunkSize = 1000;
+		this.rowConversionPool = null;
+		this.streamTransactions = false;
+		this.binlogEventQueueSize = 1000;
+		this.binlogEventQueueMaxBytes = 32L * 1024 * 1024;
+		this.bufferConfig = new RowBufferConfig();
+		this.catchUpMode = null;
+	}
+}
@@ -1,69 +1,154 @@
 package com.zendesk.maxwell.replication;
 
 import java.util.HashMap;
+import java.util.List;
 
 import com.zendesk.maxwell.filtering.Filter;
+import com.zendesk.maxwell.row.ColumnLayout;
 import com.zendesk.maxwell.schema.Database;
 import com.zendesk.maxwell.schema.Schema;
 import com.zendesk.maxwell.schema.Table;
+import com.zendesk.maxwell.schema.ddl.ResolvedSchemaChange;
+import com.zendesk.maxwell.schema.ddl.ResolvedTableAlter;
 
+/**
+ * Maps binlog table-ids to tables.
+ *
+ * Mappings outlive binlog rotation: mysql keeps a table's id for as long as the table
+ * stays in its table cache, so the same ids keep coming back.  A TABLE_MAP whose names
+ * don't match what we have for its id (the id was reused after a flush or restart)
+ * re-resolves it.  A DDL only drops the mappings of the tables it touched, and a new
+ * schema or filter drops them all.
+ */
 public class TableCache {
 	private final String maxwellDB;
 
 	public TableCache(String maxwellDB) {
 		this.maxwellDB = maxwellDB;
 	}
-	private final HashMap<Long, Table> tableMapCache = new HashMap<>();
-	private final HashMap<Long, String> blacklistedTableCache = new HashMap<>();
+	private final HashMap<Long, TableMapping> mappings = new HashMap<>();
+	private Schema schema;
+	private Filter filter;
 
 	public void processEvent(Schema schema, Filter filter, Long tableId, String dbName, String tblName) {
-		if ( !tableMapCache.containsKey(tableId) ) {
-			if ( Filter.isTableBlacklisted(filter, dbName, tblName) && !Filter.isSystemWhitelisted(maxwellDB, dbName, tblName)) {
-				blacklistedTableCache.put(tableId, tblName);
-				return;
-			}
+		if ( schema != this.schema || filter != this.filter ) {
+			clear();
+			this.schema = schema;
+			this.filter = filter;
+		}
+
+		TableMapping mapping = mappings.get(tableId);
+		if ( mapping == null || !mapping.matches(dbName, tblName) )
+			mappings.put(tableId, resolve(schema, filter, dbName, tblName));
+	}
+
+	private TableMapping resolve(Schema schema, Filter filter, String dbName, String tblName) {
+		if ( Filter.isTableBlacklisted(filter, dbName, tblName) && !Filter.isSystemWhitelisted(maxwellDB, dbName, tblName)) {
+			return new TableMapping(dbName, tblName, null, false, false);
+		}
 
-			Database db = schema.findDatabase(dbName);
-			if ( db == null )
-				throw new RuntimeException("Couldn't find database " + dbName);
-			else {
-				Table tbl = db.findTable(tblName);
+		Database db = schema.findDatabase(dbName);
+		if ( db == null )
+			throw new RuntimeException("Couldn't find database " + dbName);
 
-				if (tbl == null)
-					throw new RuntimeException("Couldn't find table " + tblName + " in database " + dbName);
-				else
-					tableMapCache.put(tableId, tbl);
+		Table tbl = db.findTable(tblName);
+		if ( tbl == null )
+			throw new RuntimeException("Couldn't find table " + tblName + " in database " + dbName);
+
+		String database = tbl.getDatabase(), table = tbl.getName();
+		boolean whitelisted = Filter.isSystemWhitelisted(maxwellDB, database, table);
+		boolean output = shouldOutputEvent(database, table, filter, tbl);
+		boolean filterValues = output && !whitelisted && Filter.hasValueFilters(filter, database, table);
+
+		return new TableMapping(dbName, tblName, tbl, output, filterValues);
+	}
+
+	/**
+	 * Should we output a batch of rows for the given database and table?
+	 *
+	 * First against a whitelist/blacklist/filter.  The whitelist
+	 * ensures events that maxwell needs (maxwell.bootstrap, maxwell.heartbeats)
+	 * are always passed along.
+	 *
+	 * The system the blacklist gets rid of the
+	 * `ha_health_check` and `rds_heartbeat` tables which are weird
+	 * replication-control mechanism events in Alibaba RDS (and maybe amazon?)
+	 *
+	 * Then we check the configured filters.
+	 *
+	 * Finall, if we decide to exclude a table we check the filter to
+	 * see if it's possible that a column-value filter could reverse this decision
+	 *
+	 * @param database The database of the DML
+	 * @param table The table of the DML
+	 * @param filter A table-filter, or null
+	 * @param tbl The table's definition
+	 * @return Whether we should write the event to the producer
+	 */
+	private boolean shouldOutputEvent(String database, String table, Filter filter, Table tbl) {
+		if ( Filter.isSystemBlacklisted(database, table) )
+			return false;
+		else if ( Filter.isSystemWhitelisted(maxwellDB, database, table) )
+			return true;
+		else {
+			if ( Filter.includes(filter, database, table) )
+				return true;
+			else
+				return Filter.couldIncludeFromColumnFilters(filter, database, table, tbl.getColumnNames());
+		}
+	}
+
+	/**
+	 * Forget the mappings of every table the given schema changes touched.  A change to a
+	 * whole database (tableName() == null) forgets all of that database's tables.
+	 */
+	public void invalidate(List<ResolvedSchemaChange> changes) {
+		for ( ResolvedSchemaChange change : changes ) {
+			invalidate(change.databaseName(), change.tableName());
+
+			if ( change instanceof ResolvedTableAlter ) {
+				Table newTable = ((ResolvedTableAlter) change).newTable;
+				invalidate(newTable.getDatabase(), newTable.getName());
 			}
 		}
+	}
 
+	private void invalidate(String database, String table) {
+		// names in DDL needn't match the case mysql reports them in
+		mappings.values().removeIf(m ->
+			m.database.equalsIgnoreCase(database) && (table == null || m.table.equalsIgnoreCase(table))
+		);
+	}
+
+	TableMapping getMapping(Long tableId) {
+		return mappings.get(tableId);
 	}
 
 	public Table getTable(Long tableId) {
-		return tableMapCache.get(tableId);
+		TableMapping m = mappings.get(tableId);
+		return m == null ? null : m.tableDef;
+	}
+
+	public ColumnLayout getColumnLayout(Long tableId) {
+		TableMapping m = mappings.get(tableId);
+		return m == null ? null : m.layout;
 	}
 
 	public boolean isTableBlacklisted(Long tableId) {
-		return blacklistedTableCache.containsKey(tableId);
+		TableMapping m = mappings.get(tableId);
+		return m != null && m.isBlacklisted();
 	}
 
 	public String getBlacklistedTableName(Long tableId) {
-		return blacklistedTableCache.get(tableId);
+		TableMapping m = mappings.get(tableId);
+		return m != null && m.isBlacklisted() ? m.table : null;
 	}
 
 	public void clear() {
-		tableMapCache.clear();
-		blacklistedTableCache.clear();
+		mappings.clear();
 	}
 
 	public String getMaxwellDB() {
 		return maxwellDB;
 	}
-
-	public HashMap<Long, Table> getTableMapCache() {
-		return tableMapCache;
-	}
-
-	public HashMap<Long, String> getBlacklistedTableCache() {
-		return blacklistedTableCache;
-	}
 }
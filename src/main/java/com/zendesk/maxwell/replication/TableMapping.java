@@ -0,0 +1,38 @@
+package com.zendesk.maxwell.replication;
+
+import com.zendesk.maxwell.row.ColumnLayout;
+import com.zendesk.maxwell.schema.Table;
+
+/**
+ * What a binlog table-id maps to, resolved once when its TABLE_MAP is first seen and
+ * reused for every rows-event on that table until a DDL touches it.
+ */
+class TableMapping {
+	// names as given by the TABLE_MAP event, used to check a table-id hasn't been reused
+	final String database;
+	final String table;
+
+	final Table tableDef; // null for blacklisted tables
+	final ColumnLayout layout;
+
+	// should rows of this table be output?  if `filterValues`, only those the value filters accept.
+	final boolean output;
+	final boolean filterValues;
+
+	TableMapping(String database, String table, Table tableDef, boolean output, boolean filterValues) {
+		this.database = database;
+		this.table = table;
+		this.tableDef = tableDef;
+		this.layout = tableDef == null ? null : new ColumnLayout(tableDef.getColumnList());
+		this.output = output;
+		this.filterValues = filterValues;
+	}
+
+	boolean isBlacklisted() {
+		return tableDef == null;
+	}
+
+	boolean matches(String database, String table) {
+		return this.database.equals(database) && this.table.equals(table);
+	}
+}
@@ -0,0 +1,235 @@
+package com.zendesk.maxwell.row;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
+import com.zendesk.maxwell.schema.columndef.BitColumnDef;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.columndef.DecimalColumnDef;
+import com.zendesk.maxwell.schema.columndef.FloatColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
+import com.zendesk.maxwell.schema.columndef.JsonColumnDef;
+import com.zendesk.maxwell.schema.columndef.SetColumnDef;
+import com.zendesk.maxwell.schema.columndef.StringColumnDef;
+import com.zendesk.maxwell.schema.columndef.YearColumnDef;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the columns of one ColumnLayout as JSON fields.
+ *
+ * Field names are quoted and escaped once up front, and each column is written with
+ * the JsonGenerator call for the type its ColumnDef decodes to.  Values of any other
+ * type (replaced by a javascript filter, say) go through RowMap's generic path.
+ *
+ * utf8 and utf8mb4 string columns that nothing has read yet are still the bytes
+ * mysql sent, which are already UTF-8; those are copied into the output as they
+ * are, without being decoded to a String and encoded back.
+ */
+class ColumnJsonWriter {
+	private enum Kind { INTEGER, FLOAT, DECIMAL, STRING, UTF8_STRING, SET, JSON }
+
+	private final String[] keys;
+	private final SerializableString[] names;
+	private final Kind[] kinds;
+
+	ColumnJsonWriter(ColumnLayout layout) {
+		int size = layout.size();
+		this.keys = new String[size];
+		this.names = new SerializableString[size];
+		this.kinds = new Kind[size];
+
+		for ( int i = 0; i < size; i++ ) {
+			keys[i] = layout.getName(i);
+			names[i] = new SerializedString(keys[i]);
+			kinds[i] = kindOf(layout.getColumn(i));
+		}
+	}
+
+	private static Kind kindOf(ColumnDef c) {
+		if ( c instanceof IntColumnDef || c instanceof BigIntColumnDef || c instanceof BitColumnDef || c instanceof YearColumnDef )
+			return Kind.INTEGER;
+		else if ( c instanceof FloatColumnDef )
+			return Kind.FLOAT;
+		else if ( c instanceof DecimalColumnDef )
+			return Kind.DECIMAL;
+		else if ( c instanceof SetColumnDef )
+			return Kind.SET;
+		else if ( c instanceof JsonColumnDef )
+			return Kind.JSON;
+		else if ( c instanceof StringColumnDef && ((StringColumnDef) c).isUTF8() )
+			return Kind.UTF8_STRING;
+		else
+			return Kind.STRING;
+	}
+
+	/**
+	 * @return true if `raw`, the undecoded value of `column`, is written straight from its
+	 *         bytes rather than decoded first
+	 */
+	boolean writesRaw(int column, Object raw) {
+		return kinds[column] == Kind.UTF8_STRING && raw instanceof byte[];
+	}
+
+	/**
+	 * Jackson copies UTF-8 through as is, so bytes from the binlog are only written
+	 * that way if they're well-formed; anything else goes through decoding, which
+	 * replaces bad sequences with U+FFFD.
+	 */
+	static boolean isValidUTF8(byte[] b) {
+		int i = 0;
+		int n = b.length;
+		while ( i < n && b[i] >= 0 ) // ASCII
+			i++;
+
+		while ( i < n ) {
+			int c = b[i++] & 0xFF;
+			if ( c < 0x80 )
+				continue;
+
+			int more, min;
+			if ( c >= 0xC2 && c <= 0xDF ) {
+				more = 1;
+				min = 0x80;
+				c &= 0x1F;
+			} else if ( c >= 0xE0 && c <= 0xEF ) {
+				more = 2;
+				min = 0x800;
+				c &= 0x0F;
+			} else if ( c >= 0xF0 && c <= 0xF4 ) {
+				more = 3;
+				min = 0x10000;
+				c &= 0x07;
+			} else {
+				return false;
+			}
+
+			if ( i + more > n )
+				return false;
+			for ( int k = 0; k < more; k++ ) {
+				int cc = b[i++] & 0xFF;
+				if ( (cc & 0xC0) != 0x80 )
+					return false;
+				c = (c << 6) | (cc & 0x3F);
+			}
+
+			// overlong, surrogate or past U+10FFFF
+			if ( c < min || (c >= 0xD800 && c <= 0xDFFF) || c > 0x10FFFF )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Write the fields of `values`, which must have been built with this writer's layout,
+	 * into the object `g` is in the middle of.
+	 *
+	 * @param excluded columns to leave out, as from ColumnLayout.excludedColumns, or null
+	 * @param excludeColumns the patterns `excluded` came from, for keys that aren't columns
+	 */
+	void writeFields(JsonGenerator g, ColumnValueMap values, boolean includeNullField, boolean[] excluded, List<Pattern> excludeColumns) throws IOException {
+		for ( int i = 0; i < kinds.length; i++ ) {
+			if ( !values.containsColumn(i) || (excluded != null && excluded[i]) )
+				continue;
+
+			if ( kinds[i] == Kind.UTF8_STRING ) {
+				byte[] utf8 = values.getRawBytes(i);
+				if ( utf8 != null && isValidUTF8(utf8) ) {
+					g.writeFieldName(names[i]);
+					g.writeUTF8String(utf8, 0, utf8.length); // escapes, unlike writeRawUTF8String
+					continue;
+				}
+			}
+
+			Object value = values.get(i);
+			if ( value == null ) {
+				if ( includeNullField ) {
+					g.writeFieldName(names[i]);
+					g.writeNull();
+				}
+			} else if ( !writeTyped(g, i, value) ) {
+				RowMap.writeValueToJSON(g, includeNullField, keys[i], value);
+			}
+		}
+
+		Map<String, Object> overflow = values.getOverflow();
+		if ( overflow != null ) {
+			for ( Map.Entry<String, Object> entry : overflow.entrySet() ) {
+				if ( !ColumnLayout.isExcluded(entry.getKey(), excludeColumns) )
+					RowMap.writeValueToJSON(g, includeNullField, entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private boolean writeTyped(JsonGenerator g, int i, Object value) throws IOException {
+		switch ( kinds[i] ) {
+			case INTEGER:
+				if ( value instanceof Long ) {
+					g.writeFieldName(names[i]);
+					g.writeNumber((Long) value);
+					return true;
+				} else if ( value instanceof Integer ) {
+					g.writeFieldName(names[i]);
+					g.writeNumber((Integer) value);
+					return true;
+				} else if ( value instanceof BigInteger ) {
+					g.writeFieldName(names[i]);
+					g.writeNumber((BigInteger) value);
+					return true;
+				}
+				return false;
+			case FLOAT:
+				if ( value instanceof Double ) {
+					g.writeFieldName(names[i]);
+					g.writeNumber((Double) value);
+					return true;
+				} else if ( value instanceof Float ) {
+					g.writeFieldName(names[i]);
+					g.writeNumber((Float) value);
+					return true;
+				}
+				return false;
+			case DECIMAL:
+				if ( value instanceof BigDecimal ) {
+					g.writeFieldName(names[i]);
+					g.writeNumber((BigDecimal) value);
+					return true;
+				}
+				return false;
+			case SET:
+				if ( value instanceof List ) {
+					g.writeFieldName(names[i]);
+					g.writeStartArray();
+					for ( Object s : (List<?>) value ) {
+						if ( s instanceof String )
+							g.writeString((String) s);
+						else
+							g.writeObject(s);
+					}
+					g.writeEndArray();
+					return true;
+				}
+				return false;
+			case JSON:
+				if ( value instanceof RawJSONString ) {
+					g.writeFieldName(names[i]);
+					g.writeRawValue(((RawJSONString) value).json);
+					return true;
+				}
+				return false;
+			default:
+				if ( value instanceof String ) {
+					g.writeFieldName(names[i]);
+					g.writeString((String) value);
+					return true;
+				}
+				return false;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The columns of one version of a table, in binlog order.  Built once per table
+ * and shared by every row read from it, so that rows can hold their values in
+ * arrays and look columns up by position instead of carrying their own keys.
+ */
+public class ColumnLayout {
+	private final ColumnDef[] columns;
+	private final String[] names;
+	private final HashMap<String, Integer> indexes;
+	private ColumnJsonWriter jsonWriter;
+	private volatile Exclusions exclusions;
+
+	private static class Exclusions {
+		final List<Pattern> patterns;
+		final boolean[] columns;
+
+		Exclusions(List<Pattern> patterns, boolean[] columns) {
+			this.patterns = patterns;
+			this.columns = columns;
+		}
+	}
+
+	public ColumnLayout(List<ColumnDef> columnList) {
+		int size = columnList.size();
+		this.columns = columnList.toArray(new ColumnDef[size]);
+		this.names = new String[size];
+		this.indexes = new HashMap<>(size * 2);
+
+		for ( int i = 0; i < size; i++ ) {
+			names[i] = columns[i].getName();
+			indexes.put(names[i], i);
+		}
+	}
+
+	public int size() {
+		return columns.length;
+	}
+
+	public ColumnDef getColumn(int index) {
+		return columns[index];
+	}
+
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return the position of the column named exactly `name`, or -1
+	 */
+	public int indexOf(Object name) {
+		Integer i = indexes.get(name);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * The JSON writer for rows of this layout, built on first use.
+	 */
+	ColumnJsonWriter getJsonWriter() {
+		ColumnJsonWriter w = jsonWriter;
+		if ( w == null )
+			jsonWriter = w = new ColumnJsonWriter(this);
+		return w;
+	}
+
+	/**
+	 * Resolve exclude_columns patterns against this layout.  The result is kept, so the
+	 * patterns are only run once per table version rather than once per row.
+	 *
+	 * @return which columns match one of `patterns`, or null if none do
+	 */
+	boolean[] excludedColumns(List<Pattern> patterns) {
+		if ( patterns.isEmpty() )
+			return null;
+
+		Exclusions e = exclusions;
+		if ( e == null || e.patterns != patterns ) {
+			boolean[] columns = new boolean[names.length];
+			boolean any = false;
+			for ( int i = 0; i < names.length; i++ ) {
+				columns[i] = isExcluded(names[i], patterns);
+				any |= columns[i];
+			}
+
+			e = new Exclusions(patterns, any ? columns : null);
+			exclusions = e;
+		}
+		return e.columns;
+	}
+
+	static boolean isExcluded(String name, List<Pattern> patterns) {
+		for ( Pattern p : patterns ) {
+			if ( p.matcher(name).matches() )
+				return true;
+		}
+		return false;
+	}
+}
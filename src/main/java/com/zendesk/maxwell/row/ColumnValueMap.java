@@ -0,0 +1,340 @@
+package com.zendesk.maxwell.row;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A row's column values, keyed by column name.
+ *
+ * Values read from the binlog are kept as the raw image binlog-connector gave
+ * us, and only run through ColumnDef#asJSON (charset decoding, base64, date
+ * formatting, json parsing...) the first time something -- a filter, a script,
+ * a partitioner, the serializer -- actually reads them.  Columns nothing looks
+ * at are never decoded.
+ *
+ * Values live in an array laid out by the table's shared ColumnLayout; keys
+ * that aren't columns of the table (only scripts add those) go to a small
+ * overflow map.  Iteration order is column order, then overflow keys in
+ * insertion order.
+ *
+ * Written to the disk buffer as a plain LinkedHashMap of decoded values.
+ */
+public class ColumnValueMap extends AbstractMap<String, Object> implements Serializable {
+	private static final byte ABSENT = 0;
+	private static final byte RAW = 1;
+	private static final byte DECODED = 2;
+
+	private final ColumnLayout layout;
+	private final Object[] values;
+	private final byte[] states;
+	private int columnCount;
+	private LinkedHashMap<String, Object> overflow;
+
+	public ColumnValueMap(ColumnLayout layout) {
+		this.layout = layout;
+		this.values = new Object[layout.size()];
+		this.states = new byte[layout.size()];
+	}
+
+	public ColumnLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Store a column's value as read from the binlog, to be decoded on first access.
+	 */
+	public void putRaw(int column, Serializable raw) {
+		if ( states[column] == ABSENT )
+			columnCount++;
+
+		values[column] = raw;
+		states[column] = raw == null ? DECODED : RAW;
+	}
+
+	/**
+	 * Entries put under names that aren't columns of the layout, or null if there are none.
+	 */
+	Map<String, Object> getOverflow() {
+		return overflow;
+	}
+
+	/**
+	 * Store a column's already-decoded value.
+	 */
+	public void putDecoded(int column, Object value) {
+		set(column, value);
+	}
+
+	public boolean containsColumn(int column) {
+		return states[column] != ABSENT;
+	}
+
+	/**
+	 * Cheap pre-check for comparing a before-image to this after-image.  Equal
+	 * raw values always decode to equal values, so the caller can skip decoding.
+	 *
+	 * @return true if `column` holds an undecoded raw value equal to `raw`
+	 */
+	public boolean rawEquals(int column, Serializable raw) {
+		return states[column] == RAW && Objects.deepEquals(values[column], raw);
+	}
+
+	/**
+	 * A column's value if it's still the undecoded byte[] the binlog gave us, or null.
+	 * Doesn't decode anything.
+	 */
+	byte[] getRawBytes(int column) {
+		if ( states[column] == RAW && values[column] instanceof byte[] )
+			return (byte[]) values[column];
+		return null;
+	}
+
+	boolean isRaw(int column) {
+		return states[column] == RAW;
+	}
+
+	/**
+	 * A column's value as it's stored, raw or decoded, without decoding it.
+	 */
+	Object getStored(int column) {
+		return values[column];
+	}
+
+	/**
+	 * Decode every column still holding its binlog value, except utf8 strings, which
+	 * the JSON writer copies straight from their bytes.  For the conversion pool, so
+	 * that decoding happens there rather than on whichever thread reads the row first.
+	 */
+	public void decodeAll() {
+		ColumnJsonWriter writer = layout.getJsonWriter();
+		for ( int i = 0; i < states.length; i++ ) {
+			if ( states[i] == RAW && !writer.writesRaw(i, values[i]) )
+				get(i);
+		}
+	}
+
+	public Object get(int column) {
+		if ( states[column] == RAW ) {
+			values[column] = layout.getColumn(column).asJSON(values[column]);
+			states[column] = DECODED;
+		}
+		return values[column];
+	}
+
+	private void set(int column, Object value) {
+		if ( states[column] == ABSENT )
+			columnCount++;
+
+		values[column] = value;
+		states[column] = DECODED;
+	}
+
+	private void clearColumn(int column) {
+		values[column] = null;
+		states[column] = ABSENT;
+		columnCount--;
+	}
+
+	/**
+	 * Estimated heap footprint of this map and its values (see ObjectSizes).  Column
+	 * names belong to the layout and aren't counted.
+	 */
+	public long getApproximateSize() {
+		// the map, its values array and its states array
+		long size = 32 + ObjectSizes.array(values.length, ObjectSizes.REFERENCE) + ObjectSizes.array(states.length, 1);
+
+		for ( int i = 0; i < states.length; i++ ) {
+			Object v = values[i];
+			if ( states[i] == RAW && v instanceof byte[] )
+				// most raw byte[]s are strings or JSON, which decode into twice as many bytes of chars
+				size += ObjectSizes.string(((byte[]) v).length);
+			else if ( states[i] != ABSENT )
+				size += ObjectSizes.of(v);
+		}
+
+		if ( overflow != null ) {
+			for ( Map.Entry<String, Object> e : overflow.entrySet() )
+				size += ObjectSizes.entry(e.getKey(), e.getValue());
+		}
+
+		return size;
+	}
+
+	@Override
+	public int size() {
+		return columnCount + (overflow == null ? 0 : overflow.size());
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		int i = layout.indexOf(key);
+		if ( i >= 0 )
+			return states[i] != ABSENT;
+		return overflow != null && overflow.containsKey(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		int i = layout.indexOf(key);
+		if ( i >= 0 )
+			return get(i);
+		return overflow == null ? null : overflow.get(key);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		int i = layout.indexOf(key);
+		if ( i < 0 ) {
+			if ( overflow == null )
+				overflow = new LinkedHashMap<>();
+			return overflow.put(key, value);
+		}
+
+		Object old = get(i);
+		set(i, value);
+		return old;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		int i = layout.indexOf(key);
+		if ( i < 0 )
+			return overflow == null ? null : overflow.remove(key);
+
+		if ( states[i] == ABSENT )
+			return null;
+
+		Object old = get(i);
+		clearColumn(i);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(values, null);
+		Arrays.fill(states, ABSENT);
+		columnCount = 0;
+		overflow = null;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return ColumnValueMap.this.size();
+			}
+		};
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new LinkedHashMap<>(this);
+	}
+
+	private class EntryIterator implements Iterator<Entry<String, Object>> {
+		private int next;
+		private int last = -1;
+		private Iterator<Entry<String, Object>> overflowIterator;
+
+		EntryIterator() {
+			this.next = advance(0);
+		}
+
+		private int advance(int from) {
+			while ( from < states.length && states[from] == ABSENT )
+				from++;
+			return from;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if ( next < states.length )
+				return true;
+
+			if ( overflowIterator == null ) {
+				if ( overflow == null )
+					return false;
+				overflowIterator = overflow.entrySet().iterator();
+			}
+			return overflowIterator.hasNext();
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if ( next < states.length ) {
+				last = next;
+				next = advance(next + 1);
+				return new ColumnEntry(last);
+			}
+
+			if ( !hasNext() )
+				throw new NoSuchElementException();
+
+			last = -1;
+			return overflowIterator.next();
+		}
+
+		@Override
+		public void remove() {
+			if ( last >= 0 ) {
+				if ( states[last] == ABSENT )
+					throw new IllegalStateException();
+				clearColumn(last);
+				last = -1;
+			} else if ( overflowIterator != null ) {
+				overflowIterator.remove();
+			} else {
+				throw new IllegalStateException();
+			}
+		}
+	}
+
+	private class ColumnEntry implements Entry<String, Object> {
+		private final int column;
+
+		ColumnEntry(int column) {
+			this.column = column;
+		}
+
+		@Override
+		public String getKey() {
+			return layout.getName(column);
+		}
+
+		@Override
+		public Object getValue() {
+			return get(column);
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			Object old = get(column);
+			set(column, value);
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( !(o instanceof Entry) )
+				return false;
+			Entry<?, ?> e = (Entry<?, ?>) o;
+			return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.zendesk.maxwell.row;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.zendesk.maxwell.producer.EncryptionCipher;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -39,12 +40,12 @@ class PlaintextJsonGenerator implements DataJsonGenerator {
 
 class EncryptingJsonGenerator implements DataJsonGenerator {
 	final private JsonGenerator rawGenerator;
-	final private ByteArrayOutputStream buffer;
+	final private ExposedByteArrayOutputStream buffer;
 	final private JsonGenerator encryptedGenerator;
 
 	public EncryptingJsonGenerator(
 		JsonGenerator generator, JsonFactory jsonFactory) throws IOException {
-		this.buffer = new ByteArrayOutputStream();
+		this.buffer = new ExposedByteArrayOutputStream();
 		this.rawGenerator = generator;
 		this.encryptedGenerator = jsonFactory.createGenerator(buffer);
 	}
@@ -66,9 +67,11 @@ class EncryptingJsonGenerator implements DataJsonGenerator {
 
 	private void endRaw(EncryptionContext ctx) throws Exception {
 		encryptedGenerator.flush();
-		String json = buffer.toString();
-		buffer.reset();
-		writeEncryptedField(json, ctx);
+		try {
+			writeEncryptedField(buffer.buffer(), 0, buffer.size(), ctx);
+		} finally {
+			buffer.reset();
+		}
 	}
 
 	private void endObject(EncryptionContext ctx) throws Exception {
@@ -76,17 +79,27 @@ class EncryptingJsonGenerator implements DataJsonGenerator {
 		endRaw(ctx);
 	}
 
-	public void writeEncryptedObject(String rawJson, EncryptionContext ctx) throws Exception {
+	public void writeEncryptedObject(byte[] rawJson, EncryptionContext ctx) throws Exception {
 		rawGenerator.writeStartObject();
-		writeEncryptedField(rawJson, ctx);
+		writeEncryptedField(rawJson, 0, rawJson.length, ctx);
 		rawGenerator.writeEndObject();
 	}
 
-	private  void writeEncryptedField(String rawJson, EncryptionContext ctx) throws Exception {
-		String encryptedJSON = RowEncrypt.encrypt(rawJson, ctx.secretKey, ctx.iv);
+	private void writeEncryptedField(byte[] rawJson, int offset, int length, EncryptionContext ctx) throws Exception {
 		rawGenerator.writeObjectFieldStart("encrypted");
 		rawGenerator.writeStringField("iv", Base64.encodeBase64String(ctx.iv));
-		rawGenerator.writeStringField("bytes", encryptedJSON);
+		// CBC messages go without, as they always have
+		if ( ctx.cipher == EncryptionCipher.GCM )
+			rawGenerator.writeStringField("cipher", "gcm");
+		rawGenerator.writeFieldName("bytes");
+		RowEncrypt.writeEncrypted(rawGenerator, rawJson, offset, length, ctx);
 		rawGenerator.writeEndObject();
 	}
+
+	// lets the buffered JSON go to the cipher without copying it out first
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+		byte[] buffer() {
+			return buf;
+		}
+	}
 }
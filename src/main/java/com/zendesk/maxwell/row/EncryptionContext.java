@@ -1,23 +1,40 @@
 package com.zendesk.maxwell.row;
 
+import com.zendesk.maxwell.producer.EncryptionCipher;
+
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
 class EncryptionContext {
+	// seeding a SecureRandom is expensive; each thread seeds one and keeps it
+	private static final ThreadLocal<SecureRandom> secureRandom = ThreadLocal.withInitial(() -> {
+		try {
+			return SecureRandom.getInstance("SHA1PRNG");
+		} catch ( NoSuchAlgorithmException e ) {
+			return new SecureRandom();
+		}
+	});
+
 	String secretKey;
 	byte[] iv;
+	EncryptionCipher cipher;
 
-	EncryptionContext(String secretKey, byte[] iv) {
+	EncryptionContext(String secretKey, byte[] iv, EncryptionCipher cipher) {
 		this.secretKey = secretKey;
 		this.iv = iv;
+		this.cipher = cipher;
 	}
 
 	public static EncryptionContext create(String secretKey) throws NoSuchAlgorithmException {
-		SecureRandom randomSecureRandom = SecureRandom.getInstance("SHA1PRNG");
-		byte[] iv = new byte[16];
-		randomSecureRandom.nextBytes(iv);
-		return new EncryptionContext(secretKey, iv);
+		return create(secretKey, EncryptionCipher.CBC);
 	}
-}
-
 
+	/**
+	 * A fresh IV for one message, as long as `cipher` needs.
+	 */
+	public static EncryptionContext create(String secretKey, EncryptionCipher cipher) throws NoSuchAlgorithmException {
+		byte[] iv = new byte[RowEncrypt.ivLength(cipher)];
+		secureRandom.get().nextBytes(iv);
+		return new EncryptionContext(secretKey, iv, cipher);
+	}
+}
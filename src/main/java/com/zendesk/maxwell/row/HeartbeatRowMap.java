@@ -29,6 +29,11 @@ public class HeartbeatRowMap extends RowMap {
 		return null;
 	}
 
+	@Override
+	public byte[] toJSONBytes(MaxwellOutputConfig outputConfig) throws IOException {
+		return null;
+	}
+
 	@Override
 	public boolean isTXCommit() {
 		return true;
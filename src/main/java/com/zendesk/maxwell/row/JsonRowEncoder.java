@@ -0,0 +1,16 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+
+public class JsonRowEncoder implements RowEncoder {
+	private final MaxwellOutputConfig outputConfig;
+
+	public JsonRowEncoder(MaxwellOutputConfig outputConfig) {
+		this.outputConfig = outputConfig;
+	}
+
+	@Override
+	public byte[] encode(RowMap r) throws Exception {
+		return r.toJSONBytes(outputConfig);
+	}
+}
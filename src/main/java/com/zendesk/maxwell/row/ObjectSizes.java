@@ -0,0 +1,120 @@
+package com.zendesk.maxwell.row;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Estimates of how much heap the values in a row take up, for a 64-bit JVM with
+ * compressed oops (12-byte object headers, 4-byte references, 8-byte alignment).
+ *
+ * These are estimates, not measurements: shared objects are counted once per
+ * reference, and types we don't know about get a flat guess.
+ */
+public class ObjectSizes {
+	static final int REFERENCE = 4;
+	// a LinkedHashMap entry: header, hash, key, value, next, before, after
+	static final long MAP_ENTRY = 40;
+
+	private static final long ARRAY_HEADER = 16;
+	private static final long BOXED_NUMBER = 16;
+	private static final long BOXED_WIDE_NUMBER = 24; // Long, Double
+	private static final long UNKNOWN = 64;
+
+	static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	public static long array(long length, int elementSize) {
+		return align(ARRAY_HEADER + length * elementSize);
+	}
+
+	public static long string(int length) {
+		// java 8 strings: the String (header, value, hash) plus a char[]
+		return 24 + array(length, 2);
+	}
+
+	/**
+	 * @return the estimated heap size of `value` and everything only it refers to
+	 */
+	public static long of(Object value) {
+		if ( value == null )
+			return 0;
+		else if ( value instanceof String )
+			return string(((String) value).length());
+		else if ( value instanceof byte[] )
+			return array(((byte[]) value).length, 1);
+		else if ( value instanceof Long || value instanceof Double )
+			return BOXED_WIDE_NUMBER;
+		else if ( value instanceof Integer || value instanceof Float || value instanceof Short
+				|| value instanceof Byte || value instanceof Boolean || value instanceof Character )
+			return BOXED_NUMBER;
+		else if ( value instanceof RawJSONString )
+			return BOXED_NUMBER + of(((RawJSONString) value).json);
+		else if ( value instanceof BigInteger )
+			return bigInteger((BigInteger) value);
+		else if ( value instanceof BigDecimal )
+			return bigDecimal((BigDecimal) value);
+		else if ( value instanceof java.sql.Timestamp )
+			return 32;
+		else if ( value instanceof java.util.Date )
+			return 24;
+		else if ( value instanceof BitSet )
+			return 24 + array((((BitSet) value).length() + 63) / 64, 8);
+		else if ( value instanceof Object[] )
+			return objectArray((Object[]) value);
+		else if ( value instanceof Collection )
+			return collection((Collection<?>) value);
+		else if ( value instanceof ColumnValueMap )
+			return ((ColumnValueMap) value).getApproximateSize();
+		else if ( value instanceof Map )
+			return map((Map<?, ?>) value);
+		else
+			return UNKNOWN;
+	}
+
+	/**
+	 * @return the estimated size of one LinkedHashMap entry, including its key
+	 */
+	public static long entry(String key, Object value) {
+		return MAP_ENTRY + of(key) + of(value);
+	}
+
+	private static long bigInteger(BigInteger i) {
+		// header, signum, mag, 4 cached ints; mag is an int[]
+		return 40 + array((i.bitLength() + 31) / 32, 4);
+	}
+
+	private static long bigDecimal(BigDecimal d) {
+		// header, intVal, scale, precision, stringCache, intCompact.  Up to 18 digits
+		// fit in intCompact and there's no BigInteger behind it.
+		long size = 40;
+		if ( d.precision() > 18 )
+			size += bigInteger(d.unscaledValue());
+		return size;
+	}
+
+	private static long objectArray(Object[] array) {
+		long size = array(array.length, REFERENCE);
+		for ( Object o : array )
+			size += of(o);
+		return size;
+	}
+
+	private static long collection(Collection<?> c) {
+		// close enough for the ArrayLists sets decode into
+		long size = 24 + array(c.size(), REFERENCE);
+		for ( Object o : c )
+			size += of(o);
+		return size;
+	}
+
+	private static long map(Map<?, ?> m) {
+		long size = 56 + array(m.size() * 2, REFERENCE);
+		for ( Map.Entry<?, ?> e : m.entrySet() )
+			size += MAP_ENTRY + of(e.getKey()) + of(e.getValue());
+		return size;
+	}
+}
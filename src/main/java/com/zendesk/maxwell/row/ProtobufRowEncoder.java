@@ -0,0 +1,97 @@
+package com.zendesk.maxwell.row;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Encodes rows as protobuf messages whose schema is derived from their table (see ProtobufSchema).
+ *
+ * Schemas are derived once per table version and schema_id, and kept for as long as that
+ * version's ColumnLayout is in use.  A table's layout outlives unrelated DDL, which bumps the
+ * schema_id rows carry, so a layout's schema is re-derived (and its descriptor written) for
+ * each new schema_id.  Rows without a table behind them (DDL, commit markers) go out as
+ * a `maxwell.Record` wrapped around their JSON output, so everything on a topic is protobuf.
+ */
+public class ProtobufRowEncoder implements RowEncoder {
+	static final Logger LOGGER = LoggerFactory.getLogger(ProtobufRowEncoder.class);
+
+	private final MaxwellOutputConfig outputConfig;
+	private final JsonRowEncoder jsonEncoder;
+	private final Map<ColumnLayout, ProtobufSchema> schemas = Collections.synchronizedMap(new WeakHashMap<>());
+	private volatile boolean wroteRecordSchema = false;
+
+	public ProtobufRowEncoder(MaxwellOutputConfig outputConfig) {
+		this.outputConfig = outputConfig;
+		this.jsonEncoder = new JsonRowEncoder(outputConfig);
+	}
+
+	@Override
+	public byte[] encode(RowMap r) throws Exception {
+		ColumnLayout layout = r.getColumnLayout();
+		if ( layout == null ) {
+			byte[] json = jsonEncoder.encode(r);
+			if ( json == null )
+				return null;
+
+			if ( !wroteRecordSchema )
+				writeRecordSchema();
+			return r.toProtobufRecordBytes(json, outputConfig);
+		}
+
+		return r.toProtobufBytes(getSchema(r, layout), layout, outputConfig);
+	}
+
+	@Override
+	public String describe(byte[] encoded) {
+		return "(" + encoded.length + " bytes of protobuf)";
+	}
+
+	public ProtobufSchema getSchema(RowMap r, ColumnLayout layout) throws IOException {
+		ProtobufSchema schema = schemas.get(layout);
+		if ( schema == null || !Objects.equals(schema.getSchemaId(), r.getSchemaId()) ) {
+			schema = new ProtobufSchema(r.getDatabase(), r.getTable(), r.getSchemaId(), layout, outputConfig.excludeColumns);
+			LOGGER.debug("derived protobuf schema " + schema.getFileName());
+
+			if ( outputConfig.protobufSchemaDir != null )
+				writeSchema(schema);
+
+			schemas.put(layout, schema);
+		}
+		return schema;
+	}
+
+	/**
+	 * Save the schema as a FileDescriptorSet, for consumers to decode with.
+	 */
+	private void writeSchema(ProtobufSchema schema) throws IOException {
+		writeDescriptor(schema.getFileDescriptorProto(), schema.getPackage() + ".desc");
+	}
+
+	private synchronized void writeRecordSchema() throws IOException {
+		if ( wroteRecordSchema )
+			return;
+
+		if ( outputConfig.protobufSchemaDir != null )
+			writeDescriptor(ProtobufSchema.getRecordFileDescriptorProto(), "maxwell.Record.desc");
+		wroteRecordSchema = true;
+	}
+
+	private void writeDescriptor(FileDescriptorProto proto, String fileName) throws IOException {
+		File f = new File(outputConfig.protobufSchemaDir, fileName);
+		try ( FileOutputStream out = new FileOutputStream(f) ) {
+			FileDescriptorSet.newBuilder().addFile(proto).build().writeTo(out);
+		}
+		LOGGER.info("wrote protobuf schema for " + proto.getName() + " to " + f);
+	}
+}
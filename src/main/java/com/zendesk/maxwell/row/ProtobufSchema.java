@@ -0,0 +1,370 @@
+package com.zendesk.maxwell.row;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.WireFormat;
+import com.zendesk.maxwell.schema.columndef.BigIntColumnDef;
+import com.zendesk.maxwell.schema.columndef.BitColumnDef;
+import com.zendesk.maxwell.schema.columndef.ColumnDef;
+import com.zendesk.maxwell.schema.columndef.FloatColumnDef;
+import com.zendesk.maxwell.schema.columndef.IntColumnDef;
+import com.zendesk.maxwell.schema.columndef.SetColumnDef;
+import com.zendesk.maxwell.schema.columndef.YearColumnDef;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The protobuf message one version of a table is encoded as.
+ *
+ * Every table gets a `Row` message with the same header fields (database, table,
+ * schema_id, ...), so a consumer can read those with any table's descriptor before
+ * picking the right one.  The row's columns go in a nested `Data` message, used
+ * for both `data` and `old`: column i of the table is field i + 2, typed after its
+ * ColumnDef, and field 1 lists the field numbers of columns that are NULL.  Values
+ * that don't fit their column's type (a javascript filter can put a string in an
+ * int column) and columns the table doesn't have go in `untyped`, as key / JSON-value
+ * pairs, the way the JSON output falls back to writing them generically.
+ *
+ * The derivation only depends on the table's columns, so the same table version
+ * always gets the same descriptor.
+ *
+ * Records without a table behind them (DDL, and the commit markers of
+ * stream_transactions) are a fixed `maxwell.Record` message instead: the same
+ * header fields, with the record's JSON output in `json`.
+ */
+public class ProtobufSchema {
+	static final int DATABASE = 1;
+	static final int TABLE = 2;
+	static final int TYPE = 3;
+	static final int TS = 4;
+	static final int XID = 5;
+	static final int XOFFSET = 6;
+	static final int COMMIT = 7;
+	static final int POSITION = 8;
+	static final int GTID = 9;
+	static final int SERVER_ID = 10;
+	static final int THREAD_ID = 11;
+	static final int SCHEMA_ID = 12;
+	static final int QUERY = 13;
+	static final int DATA = 14;
+	static final int OLD = 15;
+	static final int EXTRA = 16;
+	static final int JSON = 17;
+
+	static final int DATA_NULLS = 1;
+	static final int DATA_UNTYPED = 65536; // past mysql's 4096 columns
+	static final int ATTRIBUTE_KEY = 1;
+	static final int ATTRIBUTE_VALUE = 2;
+
+	private enum Kind { SINT64, UINT64, DOUBLE, STRING, STRING_LIST }
+
+	private static final ThreadLocal<ByteArrayOutputStream> dataBuffer =
+		ThreadLocal.withInitial(ByteArrayOutputStream::new);
+	private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+	private final String database;
+	private final String table;
+	private final Long schemaId;
+	private final Kind[] kinds;
+	private final String[] names;
+	private final boolean[] excluded;
+	private final List<Pattern> excludeColumns;
+	private final FileDescriptorProto fileProto;
+
+	private static final FileDescriptorProto recordFileProto = buildRecordFileProto();
+
+	public ProtobufSchema(String database, String table, Long schemaId, ColumnLayout layout, List<Pattern> excludeColumns) {
+		this.database = database;
+		this.table = table;
+		this.schemaId = schemaId;
+		this.kinds = new Kind[layout.size()];
+		this.names = new String[layout.size()];
+		this.excluded = new boolean[layout.size()];
+		this.excludeColumns = excludeColumns;
+
+		for ( int i = 0; i < layout.size(); i++ ) {
+			kinds[i] = kindOf(layout.getColumn(i));
+			names[i] = layout.getName(i);
+
+			for ( Pattern p : excludeColumns ) {
+				if ( p.matcher(layout.getName(i)).matches() )
+					excluded[i] = true;
+			}
+		}
+
+		this.fileProto = buildFileProto(layout);
+	}
+
+	private static Kind kindOf(ColumnDef c) {
+		if ( c instanceof IntColumnDef || c instanceof YearColumnDef )
+			return Kind.SINT64;
+		else if ( c instanceof BigIntColumnDef )
+			return ((BigIntColumnDef) c).isSigned() ? Kind.SINT64 : Kind.UINT64;
+		else if ( c instanceof BitColumnDef )
+			return Kind.UINT64;
+		else if ( c instanceof FloatColumnDef )
+			return Kind.DOUBLE;
+		else if ( c instanceof SetColumnDef )
+			return Kind.STRING_LIST;
+		else
+			return Kind.STRING; // decimals, dates, times, strings, enums, json, geometry
+	}
+
+	private static FieldDescriptorProto.Type typeOf(Kind kind) {
+		switch ( kind ) {
+			case SINT64:
+				return FieldDescriptorProto.Type.TYPE_SINT64;
+			case UINT64:
+				return FieldDescriptorProto.Type.TYPE_UINT64;
+			case DOUBLE:
+				return FieldDescriptorProto.Type.TYPE_DOUBLE;
+			default:
+				return FieldDescriptorProto.Type.TYPE_STRING;
+		}
+	}
+
+	public Long getSchemaId() {
+		return schemaId;
+	}
+
+	public String getPackage() {
+		String pkg = "maxwell." + identifier(database) + "." + identifier(table);
+		return schemaId == null ? pkg : pkg + ".v" + schemaId;
+	}
+
+	public String getFileName() {
+		String name = "maxwell/" + database + "/" + table;
+		return (schemaId == null ? name : name + "/" + schemaId) + ".proto";
+	}
+
+	private FileDescriptorProto buildFileProto(ColumnLayout layout) {
+		String rowType = "." + getPackage() + ".Row";
+
+		DescriptorProto.Builder data = DescriptorProto.newBuilder().setName("Data");
+		data.addField(field("nulls", DATA_NULLS, FieldDescriptorProto.Type.TYPE_UINT32, true));
+
+		HashSet<String> used = new HashSet<>();
+		used.add("nulls");
+		used.add("untyped");
+		for ( int i = 0; i < layout.size(); i++ ) {
+			String name = identifier(layout.getName(i));
+			if ( !used.add(name) ) {
+				name = name + "_" + (i + 2);
+				used.add(name);
+			}
+			data.addField(field(name, i + 2, typeOf(kinds[i]), kinds[i] == Kind.STRING_LIST));
+		}
+		data.addField(messageField("untyped", DATA_UNTYPED, rowType + ".Attribute", true));
+
+		DescriptorProto row = header("Row", rowType)
+			.addField(messageField(FieldNames.DATA, DATA, rowType + ".Data", false))
+			.addField(messageField(FieldNames.OLD, OLD, rowType + ".Data", false))
+			.addNestedType(data)
+			.build();
+
+		return FileDescriptorProto.newBuilder()
+			.setName(getFileName())
+			.setPackage(getPackage())
+			.addMessageType(row)
+			.build();
+	}
+
+	private static FileDescriptorProto buildRecordFileProto() {
+		DescriptorProto record = header("Record", ".maxwell.Record")
+			.addField(field("json", JSON, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.build();
+
+		return FileDescriptorProto.newBuilder()
+			.setName("maxwell/record.proto")
+			.setPackage("maxwell")
+			.addMessageType(record)
+			.build();
+	}
+
+	// the fields every message starts with, and the Attribute type of `extra`
+	private static DescriptorProto.Builder header(String name, String fullName) {
+		DescriptorProto attribute = DescriptorProto.newBuilder()
+			.setName("Attribute")
+			.addField(field("key", ATTRIBUTE_KEY, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(field("value", ATTRIBUTE_VALUE, FieldDescriptorProto.Type.TYPE_STRING, false)) // as JSON
+			.build();
+
+		return DescriptorProto.newBuilder()
+			.setName(name)
+			.addField(field(FieldNames.DATABASE, DATABASE, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(field(FieldNames.TABLE, TABLE, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(field(FieldNames.TYPE, TYPE, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(field(FieldNames.TIMESTAMP, TS, FieldDescriptorProto.Type.TYPE_INT64, false))
+			.addField(field(FieldNames.TRANSACTION_ID, XID, FieldDescriptorProto.Type.TYPE_INT64, false))
+			.addField(field(FieldNames.TRANSACTION_OFFSET, XOFFSET, FieldDescriptorProto.Type.TYPE_INT64, false))
+			.addField(field(FieldNames.COMMIT, COMMIT, FieldDescriptorProto.Type.TYPE_BOOL, false))
+			.addField(field(FieldNames.POSITION, POSITION, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(field(FieldNames.GTID, GTID, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(field(FieldNames.SERVER_ID, SERVER_ID, FieldDescriptorProto.Type.TYPE_INT64, false))
+			.addField(field(FieldNames.THREAD_ID, THREAD_ID, FieldDescriptorProto.Type.TYPE_INT64, false))
+			.addField(field(FieldNames.SCHEMA_ID, SCHEMA_ID, FieldDescriptorProto.Type.TYPE_INT64, false))
+			.addField(field(FieldNames.QUERY, QUERY, FieldDescriptorProto.Type.TYPE_STRING, false))
+			.addField(messageField("extra", EXTRA, fullName + ".Attribute", true))
+			.addNestedType(attribute);
+	}
+
+	private static FieldDescriptorProto field(String name, int number, FieldDescriptorProto.Type type, boolean repeated) {
+		return FieldDescriptorProto.newBuilder()
+			.setName(name)
+			.setNumber(number)
+			.setType(type)
+			.setLabel(repeated ? FieldDescriptorProto.Label.LABEL_REPEATED : FieldDescriptorProto.Label.LABEL_OPTIONAL)
+			.build();
+	}
+
+	private static FieldDescriptorProto messageField(String name, int number, String typeName, boolean repeated) {
+		return field(name, number, FieldDescriptorProto.Type.TYPE_MESSAGE, repeated).toBuilder()
+			.setTypeName(typeName)
+			.build();
+	}
+
+	// protobuf names are [A-Za-z_][A-Za-z0-9_]*; mysql's are a lot looser.
+	private static String identifier(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 1);
+		if ( name.isEmpty() || Character.isDigit(name.charAt(0)) )
+			sb.append('_');
+
+		for ( int i = 0; i < name.length(); i++ ) {
+			char c = name.charAt(i);
+			boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+			sb.append(ok ? c : '_');
+		}
+		return sb.toString();
+	}
+
+	public FileDescriptorProto getFileDescriptorProto() {
+		return fileProto;
+	}
+
+	public static FileDescriptorProto getRecordFileDescriptorProto() {
+		return recordFileProto;
+	}
+
+	/**
+	 * The `Row` message, for decoding what this schema encodes.
+	 */
+	public Descriptors.Descriptor getDescriptor() throws Descriptors.DescriptorValidationException {
+		return Descriptors.FileDescriptor.buildFrom(fileProto, new Descriptors.FileDescriptor[0])
+			.findMessageTypeByName("Row");
+	}
+
+	/**
+	 * Write a row's column values as a `Data` message in field `field` of `out`.
+	 */
+	void writeData(CodedOutputStream out, int field, Map<String, Object> values, ColumnLayout layout, boolean includeNulls) throws IOException {
+		ByteArrayOutputStream buffer = dataBuffer.get();
+		buffer.reset();
+		CodedOutputStream data = CodedOutputStream.newInstance(buffer);
+
+		if ( values instanceof ColumnValueMap && ((ColumnValueMap) values).getLayout() == layout ) {
+			ColumnValueMap columns = (ColumnValueMap) values;
+			for ( int i = 0; i < kinds.length; i++ ) {
+				if ( columns.containsColumn(i) )
+					writeColumn(data, i, columns.get(i), includeNulls);
+			}
+
+			Map<String, Object> overflow = columns.getOverflow();
+			if ( overflow != null ) {
+				for ( Map.Entry<String, Object> entry : overflow.entrySet() )
+					writeUntyped(data, entry.getKey(), entry.getValue(), includeNulls);
+			}
+		} else {
+			for ( Map.Entry<String, Object> entry : values.entrySet() ) {
+				int i = layout.indexOf(entry.getKey());
+				if ( i >= 0 )
+					writeColumn(data, i, entry.getValue(), includeNulls);
+				else
+					writeUntyped(data, entry.getKey(), entry.getValue(), includeNulls);
+			}
+		}
+
+		data.flush();
+		out.writeByteArray(field, buffer.toByteArray());
+	}
+
+	private void writeColumn(CodedOutputStream out, int column, Object value, boolean includeNulls) throws IOException {
+		if ( excluded[column] )
+			return;
+
+		int field = column + 2;
+		if ( value == null ) {
+			if ( includeNulls )
+				out.writeUInt32(DATA_NULLS, field);
+			return;
+		}
+
+		try {
+			writeTyped(out, field, kinds[column], value);
+		} catch ( NumberFormatException e ) {
+			writeUntyped(out, names[column], value, includeNulls);
+		}
+	}
+
+	// conversions all happen before anything's written, so a NumberFormatException leaves `out` as it was.
+	private static void writeTyped(CodedOutputStream out, int field, Kind kind, Object value) throws IOException {
+		switch ( kind ) {
+			case SINT64:
+				out.writeSInt64(field, toLong(value));
+				break;
+			case UINT64:
+				out.writeUInt64(field, toLong(value));
+				break;
+			case DOUBLE:
+				out.writeDouble(field, value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString()));
+				break;
+			case STRING_LIST:
+				if ( value instanceof List ) {
+					for ( Object s : (List<?>) value )
+						out.writeString(field, s.toString());
+					break;
+				}
+				out.writeString(field, value.toString());
+				break;
+			default:
+				out.writeString(field, value instanceof RawJSONString ? ((RawJSONString) value).json : value.toString());
+		}
+	}
+
+	private void writeUntyped(CodedOutputStream out, String key, Object value, boolean includeNulls) throws IOException {
+		if ( (value == null && !includeNulls) || ColumnLayout.isExcluded(key, excludeColumns) )
+			return;
+
+		writeAttribute(out, DATA_UNTYPED, key, jsonMapper.writeValueAsString(value));
+	}
+
+	/**
+	 * Write an `Attribute` message in field `field` of `out`, sizing it up front rather
+	 * than encoding it into a buffer of its own first.
+	 */
+	static void writeAttribute(CodedOutputStream out, int field, String key, String value) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeUInt32NoTag(CodedOutputStream.computeStringSize(ATTRIBUTE_KEY, key)
+			+ CodedOutputStream.computeStringSize(ATTRIBUTE_VALUE, value));
+		out.writeString(ATTRIBUTE_KEY, key);
+		out.writeString(ATTRIBUTE_VALUE, value);
+	}
+
+	// unsigned bigints come back as BigIntegers; longValue() keeps their low 64 bits, which is what uint64 wants.
+	private static long toLong(Object value) {
+		if ( value instanceof Number )
+			return ((Number) value).longValue();
+		else if ( value instanceof Boolean )
+			return ((Boolean) value) ? 1 : 0;
+		else
+			return Long.parseLong(value.toString());
+	}
+}
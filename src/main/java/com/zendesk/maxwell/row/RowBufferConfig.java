@@ -0,0 +1,37 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.util.SpillPool;
+
+import java.io.File;
+
+/*
+   settings for the buffers a transaction's rows are collected in (see RowMapBuffer).
+ */
+public class RowBufferConfig {
+	public boolean compressSpill;
+	public boolean asyncSpill;  // write and read spill files on a background thread
+	public long heapBytes;    // estimated heap size of rows kept as objects
+	public long offHeapBytes; // off-heap memory for rows past heapBytes, before they go to disk
+	public String spillDir;   // null for the temp directory
+	public int spillSegments; // spill files kept open for reuse
+	public long spillSegmentBytes; // preallocated size of each kept spill file; 0 creates them on first spill
+
+	public RowBufferConfig() {
+		this.compressSpill = false;
+		this.asyncSpill = false;
+		this.heapBytes = defaultHeapBytes();
+		this.offHeapBytes = 0;
+		this.spillDir = null;
+		this.spillSegments = 1;
+		this.spillSegmentBytes = 0;
+	}
+
+	public SpillPool buildSpillPool() {
+		File dir = spillDir == null ? null : new File(spillDir);
+		return new SpillPool(dir, spillSegments, spillSegmentBytes, compressSpill, asyncSpill);
+	}
+
+	public static long defaultHeapBytes() {
+		return (long) (Runtime.getRuntime().maxMemory() * 0.25);
+	}
+}
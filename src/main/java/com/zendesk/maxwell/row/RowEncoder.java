@@ -0,0 +1,31 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.producer.MaxwellOutputConfig;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns rows into the bytes a producer sends, in the configured output_format.
+ */
+public interface RowEncoder {
+	/**
+	 * @return the encoded row, or null if the row has no output (heartbeats)
+	 */
+	byte[] encode(RowMap r) throws Exception;
+
+	/**
+	 * Something readable to log in place of an encoded row.
+	 */
+	default String describe(byte[] encoded) {
+		return new String(encoded, StandardCharsets.UTF_8);
+	}
+
+	static RowEncoder forConfig(MaxwellOutputConfig outputConfig) {
+		switch ( outputConfig.outputFormat ) {
+			case PROTOBUF:
+				return new ProtobufRowEncoder(outputConfig);
+			default:
+				return new JsonRowEncoder(outputConfig);
+		}
+	}
+}
@@ -1,44 +1,149 @@
 package com.zendesk.maxwell.row;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.zendesk.maxwell.producer.EncryptionCipher;
 import org.apache.commons.codec.binary.Base64;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RowEncrypt {
 	private final static String TEXT_ENCODING = "UTF-8";
 	private final static String BYTE_ENCODING = "ASCII";
 
+	static final String CBC = "AES/CBC/PKCS5PADDING";
+	static final String GCM = "AES/GCM/NoPadding";
+	static final int CBC_IV_LENGTH = 16;
+	static final int GCM_IV_LENGTH = 12;
+	private static final int GCM_TAG_BITS = 128;
+
+	private static final byte[] BASE64_ALPHABET =
+		"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+	// a Cipher can be re-initialized for every message, but not shared between threads
+	private static final ThreadLocal<Cipher> cbcCipher = ThreadLocal.withInitial(() -> newCipher(CBC));
+	private static final ThreadLocal<Cipher> gcmCipher = ThreadLocal.withInitial(() -> newCipher(GCM));
+	private static final ThreadLocal<byte[][]> buffers = ThreadLocal.withInitial(() -> new byte[2][4096]);
+	private static final ConcurrentHashMap<String, SecretKeySpec> keys = new ConcurrentHashMap<>();
+
 	public static String encrypt(String value, String secretKey, byte[] initVector) throws Exception {
-		IvParameterSpec ivSpec = new IvParameterSpec(initVector);
-		Cipher cipher = getCipher();
-		cipher.init(Cipher.ENCRYPT_MODE, loadKey(secretKey), ivSpec);
+		return encrypt(value, secretKey, initVector, EncryptionCipher.CBC);
+	}
+
+	public static String encrypt(String value, String secretKey, byte[] initVector, EncryptionCipher encryptionCipher) throws Exception {
+		Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, encryptionCipher, secretKey, initVector);
 
 		byte[] encrypted = cipher.doFinal(value.getBytes(TEXT_ENCODING));
 		return Base64.encodeBase64String(encrypted);
 	}
 
+	/**
+	 * Encrypt `length` bytes of `plaintext` from `offset`, and write them to `g` as a
+	 * base64 string value.  The cipher and the buffers it's encrypted and encoded into
+	 * belong to the calling thread and are reused from message to message.
+	 */
+	static void writeEncrypted(JsonGenerator g, byte[] plaintext, int offset, int length, EncryptionContext ctx) throws Exception {
+		Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, ctx.cipher, ctx.secretKey, ctx.iv);
+		byte[][] b = buffers.get();
+
+		int encryptedLength = cipher.getOutputSize(length);
+		if ( b[0].length < encryptedLength )
+			b[0] = new byte[Math.max(encryptedLength, b[0].length * 2)];
+		encryptedLength = cipher.doFinal(plaintext, offset, length, b[0], 0);
+
+		int encodedLength = (encryptedLength + 2) / 3 * 4;
+		if ( b[1].length < encodedLength )
+			b[1] = new byte[Math.max(encodedLength, b[1].length * 2)];
+		base64(b[0], encryptedLength, b[1]);
+
+		// base64 needs no escaping
+		g.writeRawUTF8String(b[1], 0, encodedLength);
+	}
+
 	public static String decrypt(String value, String secretKey, String initVector) throws Exception {
-		IvParameterSpec ivSpec = new IvParameterSpec(base64Decode(initVector));
-		Cipher cipher = getCipher();
-		cipher.init(Cipher.DECRYPT_MODE, loadKey(secretKey), ivSpec);
+		return decrypt(value, secretKey, initVector, EncryptionCipher.CBC);
+	}
+
+	/**
+	 * Decrypt a message's base64 `bytes` with its base64 `iv`.  `encryptionCipher` is
+	 * the message's `cipher` field: GCM for "gcm", CBC if it has none.
+	 */
+	public static String decrypt(String value, String secretKey, String initVector, EncryptionCipher encryptionCipher) throws Exception {
+		Cipher cipher = initCipher(Cipher.DECRYPT_MODE, encryptionCipher, secretKey, base64Decode(initVector));
 
 		return new String(cipher.doFinal(base64Decode(value)), Charset.forName(TEXT_ENCODING));
 	}
 
-	private static Cipher getCipher() throws Exception {
-		return Cipher.getInstance("AES/CBC/PKCS5PADDING");
+	static int ivLength(EncryptionCipher encryptionCipher) {
+		return encryptionCipher == EncryptionCipher.GCM ? GCM_IV_LENGTH : CBC_IV_LENGTH;
+	}
+
+	private static Cipher initCipher(int mode, EncryptionCipher encryptionCipher, String secretKey, byte[] initVector) throws Exception {
+		if ( initVector.length != ivLength(encryptionCipher) )
+			throw new IllegalArgumentException(encryptionCipher + " needs a " + ivLength(encryptionCipher)
+				+ "-byte initialization vector, got " + initVector.length + " bytes");
+
+		Cipher cipher;
+		AlgorithmParameterSpec params;
+		if ( encryptionCipher == EncryptionCipher.GCM ) {
+			cipher = gcmCipher.get();
+			params = new GCMParameterSpec(GCM_TAG_BITS, initVector);
+		} else {
+			cipher = cbcCipher.get();
+			params = new IvParameterSpec(initVector);
+		}
+
+		cipher.init(mode, loadKey(secretKey), params);
+		return cipher;
+	}
+
+	private static Cipher newCipher(String transformation) {
+		try {
+			return Cipher.getInstance(transformation);
+		} catch ( Exception e ) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	private static SecretKeySpec loadKey(String secretKey) throws IOException {
-		return new SecretKeySpec(secretKey.getBytes(TEXT_ENCODING), "AES");
+		SecretKeySpec key = keys.get(secretKey);
+		if ( key == null ) {
+			key = new SecretKeySpec(secretKey.getBytes(TEXT_ENCODING), "AES");
+			keys.put(secretKey, key);
+		}
+		return key;
 	}
 
 	private static byte[] base64Decode(String value) throws IOException {
 		return Base64.decodeBase64(value.getBytes(BYTE_ENCODING));
 	}
+
+	// standard, padded base64 of src[0, length) into dst
+	private static void base64(byte[] src, int length, byte[] dst) {
+		int s = 0, d = 0;
+		for ( ; s + 3 <= length; s += 3 ) {
+			int bits = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | (src[s + 2] & 0xff);
+			dst[d++] = BASE64_ALPHABET[bits >>> 18];
+			dst[d++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+			dst[d++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+			dst[d++] = BASE64_ALPHABET[bits & 0x3f];
+		}
+
+		int remaining = length - s;
+		if ( remaining > 0 ) {
+			int bits = (src[s] & 0xff) << 16 | (remaining == 2 ? (src[s + 1] & 0xff) << 8 : 0);
+			dst[d++] = BASE64_ALPHABET[bits >>> 18];
+			dst[d++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+			dst[d++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : (byte) '=';
+			dst[d] = '=';
+		}
+	}
 }
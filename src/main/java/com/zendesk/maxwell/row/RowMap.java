@@ -14,7 +14,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashSet;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +27,8 @@ import java.util.regex.Pattern;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -54,14 +59,27 @@ public class RowMap implements Serializable {
 	private Long threadId;
 	private Long schemaId;
 
-	private final LinkedHashMap<String, Object> data;
-	private final LinkedHashMap<String, Object> oldData;
+	// data, oldData and extraAttributes start out as NONE and get a map of their own when first written
+	private static final Map<String, Object> NONE = Collections.emptyMap();
 
-	private final LinkedHashMap<String, Object> extraAttributes;
+	private Map<String, Object> data;
+	private Map<String, Object> oldData;
+
+	private Map<String, Object> extraAttributes;
 
 	private final List<String> pkColumns;
 
+	// key material, computed on first use
+	private transient Object[] pkValues;
+	private transient String pkJson;
+	private transient KeyFormat pkJsonFormat;
+	private transient String pkConcat;
+	private transient String partitionKey;
+	private transient List<String> partitionKeyColumns;
+	private transient DataView dataView;
+
 	private static final JsonFactory jsonFactory = new JsonFactory();
+	private static final ObjectMapper attributeMapper = new ObjectMapper();
 
 	private long approximateSize;
 
@@ -123,14 +141,14 @@ public class RowMap implements Serializable {
 		this.table = table;
 		this.timestampMillis = timestampMillis;
 		this.timestampSeconds = timestampMillis / 1000;
-		this.data = new LinkedHashMap<>();
-		this.oldData = new LinkedHashMap<>();
-		this.extraAttributes = new LinkedHashMap<>();
+		this.data = NONE;
+		this.oldData = NONE;
+		this.extraAttributes = NONE;
 		this.position = position;
 		this.nextPosition = nextPosition;
 		this.pkColumns = pkColumns;
 		this.suppressed = false;
-		this.approximateSize = 100L; // more or less 100 bytes of overhead
+		this.approximateSize = 100L; // more or less 100 bytes of overhead.  rowQuery is shared by the whole event and not counted
 	}
 
 	public RowMap(String type, String database, String table, Long timestampMillis, List<String> pkColumns,
@@ -144,11 +162,37 @@ public class RowMap implements Serializable {
 	}
 
 	//Do we want to encrypt this part?
+	/**
+	 * The row's key, as JSON.  Key material (this, pkAsConcatString and buildPartitionKey)
+	 * is computed from one read of the primary key's values and kept for the life of the
+	 * row, so producers and partitioners can each ask for it without redoing the work.
+	 * Any change to the row's data -- putData, setData, or a write through getData() --
+	 * starts over.
+	 */
 	public String pkToJson(KeyFormat keyFormat) throws IOException {
-		if ( keyFormat == KeyFormat.HASH )
-			return pkToJsonHash();
-		else
-			return pkToJsonArray();
+		if ( pkJson == null || pkJsonFormat != keyFormat ) {
+			pkJson = keyFormat == KeyFormat.HASH ? pkToJsonHash() : pkToJsonArray();
+			pkJsonFormat = keyFormat;
+		}
+		return pkJson;
+	}
+
+	private Object[] pkValues() {
+		if ( pkValues == null ) {
+			Object[] values = new Object[pkColumns.size()];
+			for ( int i = 0; i < values.length; i++ )
+				values[i] = data.get(pkColumns.get(i));
+			pkValues = values;
+		}
+		return pkValues;
+	}
+
+	private void forgetKeys() {
+		pkValues = null;
+		pkJson = null;
+		pkConcat = null;
+		partitionKey = null;
+		partitionKeyColumns = null;
 	}
 
 	private String pkToJsonHash() throws IOException {
@@ -162,13 +206,9 @@ public class RowMap implements Serializable {
 		if (pkColumns.isEmpty()) {
 			g.writeStringField(FieldNames.UUID, UUID.randomUUID().toString());
 		} else {
-			for (String pk : pkColumns) {
-				Object pkValue = null;
-				if ( data.containsKey(pk) )
-					pkValue = data.get(pk);
-
-				writeValueToJSON(g, true, "pk." + pk.toLowerCase(), pkValue);
-			}
+			Object[] values = pkValues();
+			for ( int i = 0; i < values.length; i++ )
+				writeValueToJSON(g, true, "pk." + pkColumns.get(i).toLowerCase(), values[i]);
 		}
 
 		g.writeEndObject(); // end of 'data: { }'
@@ -184,13 +224,10 @@ public class RowMap implements Serializable {
 		g.writeString(table);
 
 		g.writeStartArray();
-		for (String pk : pkColumns) {
-			Object pkValue = null;
-			if ( data.containsKey(pk) )
-				pkValue = data.get(pk);
-
+		Object[] values = pkValues();
+		for ( int i = 0; i < values.length; i++ ) {
 			g.writeStartObject();
-			writeValueToJSON(g, true, pk.toLowerCase(), pkValue);
+			writeValueToJSON(g, true, pkColumns.get(i).toLowerCase(), values[i]);
 			g.writeEndObject();
 		}
 		g.writeEndArray();
@@ -200,14 +237,17 @@ public class RowMap implements Serializable {
 	}
 
 	public String pkAsConcatString() {
+		if ( pkConcat == null )
+			pkConcat = buildPkConcatString();
+		return pkConcat;
+	}
+
+	private String buildPkConcatString() {
 		if (pkColumns.isEmpty()) {
 			return database + table;
 		}
 		StringBuilder keys = new StringBuilder();
-		for (String pk : pkColumns) {
-			Object pkValue = null;
-			if (data.containsKey(pk))
-				pkValue = data.get(pk);
+		for (Object pkValue : pkValues()) {
 			if (pkValue != null)
 				keys.append(pkValue.toString());
 		}
@@ -217,36 +257,77 @@ public class RowMap implements Serializable {
 	}
 
 	public String buildPartitionKey(List<String> partitionColumns) {
+		if ( partitionKey != null && partitionKeyColumns == partitionColumns )
+			return partitionKey;
+
 		StringBuilder partitionKey= new StringBuilder();
 		for (String pc : partitionColumns) {
-			Object pcValue = null;
-			if (data.containsKey(pc))
-				pcValue = data.get(pc);
+			Object pcValue = data.get(pc);
 			if (pcValue != null)
 				partitionKey.append(pcValue.toString());
 		}
 
-		return partitionKey.toString();
+		this.partitionKey = partitionKey.toString();
+		this.partitionKeyColumns = partitionColumns;
+		return this.partitionKey;
 	}
 
 	private void writeMapToJSON(
 			String jsonMapName,
-			LinkedHashMap<String, Object> data,
+			Map<String, Object> data,
 			JsonGenerator g,
-			boolean includeNullField
+			boolean includeNullField,
+			List<Pattern> excludeColumns
 	) throws IOException, NoSuchAlgorithmException {
 		g.writeObjectFieldStart(jsonMapName);
 
-		for (String key : data.keySet()) {
-			Object value = data.get(key);
-
-			writeValueToJSON(g, includeNullField, key, value);
+		if ( data instanceof ColumnValueMap ) {
+			ColumnValueMap columns = (ColumnValueMap) data;
+			ColumnLayout layout = columns.getLayout();
+			layout.getJsonWriter().writeFields(g, columns, includeNullField, layout.excludedColumns(excludeColumns), excludeColumns);
+		} else {
+			for ( Map.Entry<String, Object> entry : data.entrySet() ) {
+				if ( !ColumnLayout.isExcluded(entry.getKey(), excludeColumns) )
+					writeValueToJSON(g, includeNullField, entry.getKey(), entry.getValue());
+			}
 		}
 
 		g.writeEndObject(); // end of 'jsonMapName: { }'
 	}
 
-	private void writeValueToJSON(JsonGenerator g, boolean includeNullField, String key, Object value) throws IOException {
+	/**
+	 * @return true if any of `data`'s keys survives exclude_columns, so that writing it
+	 *         isn't just an empty map
+	 */
+	private static boolean hasIncludedEntries(Map<String, Object> data, List<Pattern> excludeColumns) {
+		if ( data.isEmpty() )
+			return false;
+		if ( excludeColumns.isEmpty() )
+			return true;
+
+		Map<String, Object> others = data;
+		if ( data instanceof ColumnValueMap ) {
+			ColumnValueMap columns = (ColumnValueMap) data;
+			ColumnLayout layout = columns.getLayout();
+			boolean[] excluded = layout.excludedColumns(excludeColumns);
+			for ( int i = 0; i < layout.size(); i++ ) {
+				if ( columns.containsColumn(i) && (excluded == null || !excluded[i]) )
+					return true;
+			}
+
+			others = columns.getOverflow();
+			if ( others == null )
+				return false;
+		}
+
+		for ( String key : others.keySet() ) {
+			if ( !ColumnLayout.isExcluded(key, excludeColumns) )
+				return true;
+		}
+		return false;
+	}
+
+	static void writeValueToJSON(JsonGenerator g, boolean includeNullField, String key, Object value) throws IOException {
 		if (value == null && !includeNullField)
 			return;
 
@@ -279,6 +360,20 @@ public class RowMap implements Serializable {
 	}
 
 	public String toJSON(MaxwellOutputConfig outputConfig) throws Exception {
+		writeJSON(outputConfig);
+		return jsonFromStream();
+	}
+
+	/**
+	 * The same document as toJSON, as UTF-8 bytes.  Producers that send bytes should use
+	 * this rather than encoding toJSON's String, which skips building that String at all.
+	 */
+	public byte[] toJSONBytes(MaxwellOutputConfig outputConfig) throws Exception {
+		writeJSON(outputConfig);
+		return bytesFromStream();
+	}
+
+	private void writeJSON(MaxwellOutputConfig outputConfig) throws Exception {
 		JsonGenerator g = resetJsonGenerator();
 
 		g.writeStartObject(); // start of row {
@@ -327,26 +422,9 @@ public class RowMap implements Serializable {
 			g.writeObjectField(entry.getKey(), entry.getValue());
 		}
 
-		if ( outputConfig.excludeColumns.size() > 0 ) {
-			// NOTE: to avoid concurrent modification.
-			Set<String> keys = new HashSet<>();
-			keys.addAll(this.data.keySet());
-			keys.addAll(this.oldData.keySet());
-
-			for ( Pattern p : outputConfig.excludeColumns ) {
-				for ( String key : keys ) {
-					if ( p.matcher(key).matches() ) {
-						this.data.remove(key);
-						this.oldData.remove(key);
-					}
-				}
-			}
-		}
-
-
 		EncryptionContext encryptionContext = null;
 		if (outputConfig.encryptionEnabled()) {
-			encryptionContext = EncryptionContext.create(outputConfig.secretKey);
+			encryptionContext = EncryptionContext.create(outputConfig.secretKey, outputConfig.encryptionCipher);
 		}
 
 		DataJsonGenerator dataWriter = outputConfig.encryptionMode == EncryptionMode.ENCRYPT_DATA
@@ -354,9 +432,9 @@ public class RowMap implements Serializable {
 			: plaintextDataGeneratorThreadLocal.get();
 
 		JsonGenerator dataGenerator = dataWriter.begin();
-		writeMapToJSON(FieldNames.DATA, this.data, dataGenerator, outputConfig.includesNulls);
-		if( !this.oldData.isEmpty() ){
-			writeMapToJSON(FieldNames.OLD, this.oldData, dataGenerator, outputConfig.includesNulls);
+		writeMapToJSON(FieldNames.DATA, this.data, dataGenerator, outputConfig.includesNulls, outputConfig.excludeColumns);
+		if( hasIncludedEntries(this.oldData, outputConfig.excludeColumns) ){
+			writeMapToJSON(FieldNames.OLD, this.oldData, dataGenerator, outputConfig.includesNulls, outputConfig.excludeColumns);
 		}
 		dataWriter.end(encryptionContext);
 
@@ -364,11 +442,95 @@ public class RowMap implements Serializable {
 		g.flush();
 
 		if(outputConfig.encryptionMode == EncryptionMode.ENCRYPT_ALL){
-			String plaintext = jsonFromStream();
+			byte[] plaintext = bytesFromStream();
 			encryptingJsonGeneratorThreadLocal.get().writeEncryptedObject(plaintext, encryptionContext);
 			g.flush();
 		}
-		return jsonFromStream();
+	}
+
+	/**
+	 * This row as a protobuf `Row` message of the given schema.  schema_id is always
+	 * included, since consumers need it to pick the schema to decode with.
+	 */
+	public byte[] toProtobufBytes(ProtobufSchema schema, ColumnLayout layout, MaxwellOutputConfig outputConfig) throws IOException {
+		ByteArrayOutputStream b = byteArrayThreadLocal.get();
+		b.reset();
+		CodedOutputStream out = CodedOutputStream.newInstance(b);
+
+		writeProtobufHeader(out, outputConfig);
+
+		for ( Map.Entry<String, Object> entry : this.extraAttributes.entrySet() )
+			ProtobufSchema.writeAttribute(out, ProtobufSchema.EXTRA, entry.getKey(), attributeMapper.writeValueAsString(entry.getValue()));
+
+		schema.writeData(out, ProtobufSchema.DATA, this.data, layout, outputConfig.includesNulls);
+		if ( hasIncludedEntries(this.oldData, outputConfig.excludeColumns) )
+			schema.writeData(out, ProtobufSchema.OLD, this.oldData, layout, outputConfig.includesNulls);
+
+		out.flush();
+		return bytesFromStream();
+	}
+
+	/**
+	 * This row as a protobuf `maxwell.Record`: the header fields of toProtobufBytes,
+	 * wrapped around the row's JSON output.  For rows without a table behind them.
+	 */
+	public byte[] toProtobufRecordBytes(byte[] json, MaxwellOutputConfig outputConfig) throws IOException {
+		ByteArrayOutputStream b = byteArrayThreadLocal.get();
+		b.reset();
+		CodedOutputStream out = CodedOutputStream.newInstance(b);
+
+		writeProtobufHeader(out, outputConfig);
+		out.writeByteArray(ProtobufSchema.JSON, json);
+
+		out.flush();
+		return bytesFromStream();
+	}
+
+	private void writeProtobufHeader(CodedOutputStream out, MaxwellOutputConfig outputConfig) throws IOException {
+		// a DDL record can be for a database, with no table, or for neither
+		if ( this.database != null )
+			out.writeString(ProtobufSchema.DATABASE, this.database);
+		if ( this.table != null )
+			out.writeString(ProtobufSchema.TABLE, this.table);
+		out.writeString(ProtobufSchema.TYPE, this.rowType);
+		out.writeInt64(ProtobufSchema.TS, this.timestampSeconds);
+
+		if ( outputConfig.includesRowQuery && this.rowQuery != null )
+			out.writeString(ProtobufSchema.QUERY, this.rowQuery);
+
+		if ( outputConfig.includesCommitInfo ) {
+			if ( this.xid != null )
+				out.writeInt64(ProtobufSchema.XID, this.xid);
+
+			if ( outputConfig.includesXOffset && this.xoffset != null && !this.txCommit )
+				out.writeInt64(ProtobufSchema.XOFFSET, this.xoffset);
+
+			if ( this.txCommit )
+				out.writeBool(ProtobufSchema.COMMIT, true);
+		}
+
+		BinlogPosition binlogPosition = this.position.getBinlogPosition();
+		if ( outputConfig.includesBinlogPosition )
+			out.writeString(ProtobufSchema.POSITION, binlogPosition.getFile() + ":" + binlogPosition.getOffset());
+
+		if ( outputConfig.includesGtidPosition && binlogPosition.getGtid() != null )
+			out.writeString(ProtobufSchema.GTID, binlogPosition.getGtid());
+
+		if ( outputConfig.includesServerId && this.serverId != null )
+			out.writeInt64(ProtobufSchema.SERVER_ID, this.serverId);
+
+		if ( outputConfig.includesThreadId && this.threadId != null )
+			out.writeInt64(ProtobufSchema.THREAD_ID, this.threadId);
+
+		if ( this.schemaId != null )
+			out.writeInt64(ProtobufSchema.SCHEMA_ID, this.schemaId);
+	}
+
+	/**
+	 * The columns this row's data was read with, or null for rows not read from a table.
+	 */
+	public ColumnLayout getColumnLayout() {
+		return this.data instanceof ColumnValueMap ? ((ColumnValueMap) this.data).getLayout() : null;
 	}
 
 	private String jsonFromStream() {
@@ -378,6 +540,13 @@ public class RowMap implements Serializable {
 		return s;
 	}
 
+	private byte[] bytesFromStream() {
+		ByteArrayOutputStream b = byteArrayThreadLocal.get();
+		byte[] bytes = b.toByteArray();
+		b.reset();
+		return bytes;
+	}
+
 	public Object getData(String key) {
 		return this.data.get(key);
 	}
@@ -391,32 +560,51 @@ public class RowMap implements Serializable {
 	}
 
 	private long approximateKVSize(String key, Object value) {
-		long length = 0;
-		length += 40; // overhead.  Whynot.
-		length += key.length() * 2;
-
-		if ( value instanceof String ) {
-			length += ((String) value).length() * 2;
-		} else {
-			length += 64;
-		}
-
-		return length;
+		return ObjectSizes.entry(key, value);
 	}
 
 	public void putData(String key, Object value) {
-		this.data.put(key, value);
+		writableData().put(key, value);
+		forgetKeys();
 
 		this.approximateSize += approximateKVSize(key, value);
 	}
 
+	/**
+	 * Decode the column values that are still raw (see ColumnValueMap.decodeAll).
+	 */
+	public void decodeData() {
+		if ( data instanceof ColumnValueMap )
+			((ColumnValueMap) data).decodeAll();
+	}
+
+	/**
+	 * Replace this row's data with column values straight from the binlog,
+	 * which are decoded only as they're read.
+	 */
+	public void setData(ColumnValueMap values) {
+		this.data = values;
+		forgetKeys();
+
+		this.approximateSize += values.getApproximateSize();
+	}
+
+	/**
+	 * Replace this row's old data with the before-image values of the columns an update changed.
+	 */
+	public void setOldData(ColumnValueMap values) {
+		this.oldData = values;
+
+		this.approximateSize += values.getApproximateSize();
+	}
+
 	public void putExtraAttribute(String key, Object value) {
 		if (FieldNames.isProtected(key)) {
 			throw new ProtectedAttributeNameException("Extra attribute key name '" + key + "' is " +
 					"a protected name. Must not be any of: " +
 					String.join(", ", FieldNames.getFieldnames()));
 		}
-		this.extraAttributes.put(key, value);
+		getExtraAttributes().put(key, value);
 
 		this.approximateSize += approximateKVSize(key, value);
 	}
@@ -426,7 +614,7 @@ public class RowMap implements Serializable {
 	}
 
 	public void putOldData(String key, Object value) {
-		this.oldData.put(key, value);
+		getOldData().put(key, value);
 
 		this.approximateSize += approximateKVSize(key, value);
 	}
@@ -521,18 +709,34 @@ public class RowMap implements Serializable {
 		return !suppressed;
 	}
 
-	public LinkedHashMap<String, Object> getData()
+	/**
+	 * The row's data, as a live view: writes go through to the row and drop its
+	 * memoized key material (see pkToJson).
+	 */
+	public Map<String, Object> getData()
 	{
+		if ( dataView == null )
+			dataView = new DataView();
+		return dataView;
+	}
+
+	private Map<String, Object> writableData() {
+		if ( data == NONE )
+			data = new LinkedHashMap<>();
 		return data;
 	}
 
-	public LinkedHashMap<String, Object> getExtraAttributes()
+	public Map<String, Object> getExtraAttributes()
 	{
+		if ( extraAttributes == NONE )
+			extraAttributes = new LinkedHashMap<>();
 		return extraAttributes;
 	}
 
-	public LinkedHashMap<String, Object> getOldData()
+	public Map<String, Object> getOldData()
 	{
+		if ( oldData == NONE )
+			oldData = new LinkedHashMap<>();
 		return oldData;
 	}
 
@@ -540,6 +744,38 @@ public class RowMap implements Serializable {
 		this.suppressed = true;
 	}
 
+	/*
+		For RowMapSpillCodec, which saves and restores these as they are, without
+		the lazy allocation and size accounting of the public accessors.
+	*/
+	Map<String, Object> dataMap() {
+		return data;
+	}
+
+	Map<String, Object> oldDataMap() {
+		return oldData;
+	}
+
+	Map<String, Object> extraAttributesMap() {
+		return extraAttributes;
+	}
+
+	List<String> getPkColumns() {
+		return pkColumns;
+	}
+
+	boolean isSuppressed() {
+		return suppressed;
+	}
+
+	void restore(Map<String, Object> data, Map<String, Object> oldData, Map<String, Object> extraAttributes, long approximateSize) {
+		this.data = data == null ? NONE : data;
+		this.oldData = oldData == null ? NONE : oldData;
+		this.extraAttributes = extraAttributes == null ? NONE : extraAttributes;
+		this.approximateSize = approximateSize;
+		forgetKeys();
+	}
+
 	public String getKafkaTopic() {
 		return this.kafkaTopic;
 	}
@@ -563,4 +799,86 @@ public class RowMap implements Serializable {
 				", oldData=" + oldData +
 				'}';
 	}
+
+	/*
+		what getData() hands out.  Reads go straight to the row's current data map;
+		anything that can change it forgets the row's keys first.
+	*/
+	private class DataView extends AbstractMap<String, Object> {
+		@Override
+		public int size() {
+			return data.size();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return data.containsKey(key);
+		}
+
+		@Override
+		public Object get(Object key) {
+			return data.get(key);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			forgetKeys();
+			return writableData().put(key, value);
+		}
+
+		@Override
+		public Object remove(Object key) {
+			forgetKeys();
+			return data == NONE ? null : data.remove(key);
+		}
+
+		@Override
+		public void clear() {
+			forgetKeys();
+			if ( data != NONE )
+				data.clear();
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					Iterator<Entry<String, Object>> entries = data.entrySet().iterator();
+
+					return new Iterator<Entry<String, Object>>() {
+						@Override
+						public boolean hasNext() {
+							return entries.hasNext();
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							Entry<String, Object> entry = entries.next();
+
+							return new SimpleEntry<String, Object>(entry) {
+								@Override
+								public Object setValue(Object value) {
+									forgetKeys();
+									super.setValue(value);
+									return entry.setValue(value);
+								}
+							};
+						}
+
+						@Override
+						public void remove() {
+							forgetKeys();
+							entries.remove();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return data.size();
+				}
+			};
+		}
+	}
 }
@@ -1,27 +1,30 @@
 package com.zendesk.maxwell.row;
 
 import com.zendesk.maxwell.util.ListWithDiskBuffer;
+import com.zendesk.maxwell.util.OffHeapPool;
+import com.zendesk.maxwell.util.SpillPool;
 
 import java.io.IOException;
 
 public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
-	private static long FlushOutputStreamBytes = 10000000;
 	private Long xid;
 	private Long xoffset = 0L;
 	private Long serverId;
 	private Long threadId;
 	private Long schemaId;
-	private long memorySize = 0;
-	private long outputStreamCacheSize = 0;
+	private volatile long memorySize = 0;
 	private final long maxMemory;
 
 	public RowMapBuffer(long maxInMemoryElements) {
-		super(maxInMemoryElements);
-		this.maxMemory = (long) (Runtime.getRuntime().maxMemory() * 0.25);
+		this(maxInMemoryElements, RowBufferConfig.defaultHeapBytes());
 	}
 
 	public RowMapBuffer(long maxInMemoryElements, long maxMemory) {
-		super(maxInMemoryElements);
+		this(maxInMemoryElements, maxMemory, new SpillPool(), null);
+	}
+
+	public RowMapBuffer(long maxInMemoryElements, long maxMemory, SpillPool spillPool, OffHeapPool offHeapPool) {
+		super(maxInMemoryElements, new RowMapSpillCodec(), spillPool, offHeapPool);
 		this.maxMemory = maxMemory;
 	}
 
@@ -40,21 +43,15 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 	protected RowMap evict() throws IOException {
 		RowMap r = super.evict();
 		this.memorySize -= r.getApproximateSize();
-
-		/* For performance reasons, the output stream will hold on to cached objects.
-		 * There's probably a smarter thing to do (write our own serdes, maybe?), but
-		 * for now we forcibly flush its cache when it gets too big. */
-		this.outputStreamCacheSize += r.getApproximateSize();
-		if ( this.outputStreamCacheSize > FlushOutputStreamBytes ) {
-			resetOutputStreamCaches();
-			this.outputStreamCacheSize = 0;
-		}
-
 		return r;
 	}
 
 	public RowMap removeFirst() throws IOException, ClassNotFoundException {
+		boolean inMemory = inMemorySize().equals(size());
 		RowMap r = super.removeFirst(RowMap.class);
+		if ( inMemory )
+			this.memorySize -= r.getApproximateSize();
+
 		r.setXid(this.xid);
 		r.setXoffset(this.xoffset++);
 		r.setServerId(this.serverId);
@@ -64,6 +61,13 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 		return r;
 	}
 
+	/**
+	 * @return the estimated heap size of the rows held in memory
+	 */
+	public long getMemorySize() {
+		return memorySize;
+	}
+
 	public void setXid(Long xid) {
 		this.xid = xid;
 	}
@@ -89,7 +93,6 @@ public class RowMapBuffer extends ListWithDiskBuffer<RowMap> {
 				", threadId=" + threadId +
 				", schemaId=" + schemaId +
 				", memorySize=" + memorySize +
-				", outputStreamCacheSize=" + outputStreamCacheSize +
 				", maxMemory=" + maxMemory +
 				'}';
 	}
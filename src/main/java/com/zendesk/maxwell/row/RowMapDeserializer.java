@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ValueNode;
 import com.zendesk.maxwell.errors.ParseException;
+import com.zendesk.maxwell.producer.EncryptionCipher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,10 +49,11 @@ public class RowMapDeserializer extends StdDeserializer<RowMap> {
 		if (encrypted != null) {
 			String iv = encrypted.get("iv").textValue();
 			String bytes = encrypted.get("bytes").textValue();
+			EncryptionCipher cipher = cipherOf(encrypted.get("cipher"));
 
 			String decryptedData;
 			try {
-				decryptedData = RowEncrypt.decrypt(bytes, this.secret_key, iv);
+				decryptedData = RowEncrypt.decrypt(bytes, this.secret_key, iv, cipher);
 			} catch (Exception e) {
 				throw new IOException(e);
 			}
@@ -171,6 +173,20 @@ public class RowMapDeserializer extends StdDeserializer<RowMap> {
 		return value.asText();
 	}
 
+	private static EncryptionCipher cipherOf(JsonNode cipher) {
+		if ( cipher == null || cipher.isNull() )
+			return EncryptionCipher.CBC;
+
+		switch ( cipher.asText() ) {
+			case "cbc":
+				return EncryptionCipher.CBC;
+			case "gcm":
+				return EncryptionCipher.GCM;
+			default:
+				throw new ParseException("unknown `encrypted.cipher`: " + cipher.asText());
+		}
+	}
+
 	private static ObjectMapper getMapper(String secret_key)
 	{
 		if (mapper == null) {
@@ -0,0 +1,437 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.replication.BinlogPosition;
+import com.zendesk.maxwell.replication.Position;
+import com.zendesk.maxwell.util.SpillBuffer;
+import com.zendesk.maxwell.util.SpillCodec;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The spill format for a RowMapBuffer.
+ *
+ * A spilled file only ever lives as long as the buffer that wrote it, so the
+ * things rows have in common -- their table's ColumnLayout, primary key
+ * columns, database and table names -- aren't written at all.  They go in a
+ * dictionary kept in memory, and a row refers to them by number.  Column
+ * values are written by position in their layout, raw ones still raw, with a
+ * tag for their type.  A row's position and query are usually the same as
+ * the row before's (one binlog event, many rows) and are written only when
+ * they change.
+ *
+ * Subclasses of RowMap are rare in a buffer and are java-serialized.
+ */
+public class RowMapSpillCodec implements SpillCodec<RowMap> {
+	private static final int ROW = 0;
+	private static final int SERIALIZED_ROW = 1;
+
+	private static final int NO_MAP = 0;
+	private static final int COLUMN_MAP = 1;
+	private static final int PLAIN_MAP = 2;
+
+	private static final int ABSENT = 0;
+	private static final int RAW = 1;
+	private static final int DECODED = 2;
+
+	private static final int NO_POSITION = 0;
+	private static final int PREVIOUS_POSITION = 1;
+	private static final int SAME_AS_POSITION = 2;
+	private static final int NEW_POSITION = 3;
+
+	private static final int NO_QUERY = 0;
+	private static final int PREVIOUS_QUERY = 1;
+	private static final int NEW_QUERY = 2;
+
+	private static final int NULL = 0;
+	private static final int INTEGER = 1;
+	private static final int LONG = 2;
+	private static final int FLOAT = 3;
+	private static final int DOUBLE = 4;
+	private static final int STRING = 5;
+	private static final int BYTES = 6;
+	private static final int BIG_DECIMAL = 7;
+	private static final int BIG_INTEGER = 8;
+	private static final int TRUE = 9;
+	private static final int FALSE = 10;
+	private static final int RAW_JSON = 11;
+	private static final int LIST = 12;
+	private static final int BIT_SET = 13;
+	private static final int SERIALIZED = 14;
+
+	private static final int SUPPRESSED = 1;
+	private static final int TX_COMMIT = 2;
+
+	// strings are looked up by value, layouts and key column lists by identity
+	private final ArrayList<Object> dictionary = new ArrayList<>();
+	private final HashMap<String, Integer> stringIds = new HashMap<>();
+	private final IdentityHashMap<Object, Integer> objectIds = new IdentityHashMap<>();
+
+	private Position lastWrittenPosition, lastWrittenNextPosition;
+	private String lastWrittenQuery;
+	private Position lastReadPosition, lastReadNextPosition;
+	private String lastReadQuery;
+
+	@Override
+	public void write(RowMap r, SpillBuffer out) throws IOException {
+		if ( r.getClass() != RowMap.class ) {
+			out.writeByte(SERIALIZED_ROW);
+			out.writeSerialized(r);
+			return;
+		}
+
+		out.writeByte(ROW);
+		writeReference(out, stringIds, r.getRowType());
+		writeReference(out, stringIds, r.getDatabase());
+		writeReference(out, stringIds, r.getTable());
+		writeReference(out, objectIds, r.getPkColumns());
+		writeReference(out, stringIds, r.getKafkaTopic());
+		out.writeSignedVarLong(r.getTimestampMillis());
+
+		lastWrittenPosition = writePosition(out, r.getPosition(), lastWrittenPosition, null);
+		lastWrittenNextPosition = writePosition(out, r.getNextPosition(), lastWrittenNextPosition, r.getPosition());
+
+		String query = r.getRowQuery();
+		if ( Objects.equals(query, lastWrittenQuery) ) {
+			out.writeByte(PREVIOUS_QUERY);
+		} else if ( query == null ) {
+			out.writeByte(NO_QUERY);
+			lastWrittenQuery = null;
+		} else {
+			out.writeByte(NEW_QUERY);
+			out.writeString(query);
+			lastWrittenQuery = query;
+		}
+
+		out.writeByte((r.isSuppressed() ? SUPPRESSED : 0) | (r.isTXCommit() ? TX_COMMIT : 0));
+		writeNullableLong(out, r.getXid());
+		writeNullableLong(out, r.getXoffset());
+		writeNullableLong(out, r.getServerId());
+		writeNullableLong(out, r.getThreadId());
+		writeNullableLong(out, r.getSchemaId());
+		out.writeVarLong(r.getApproximateSize());
+
+		writeMap(out, r.dataMap());
+		writeMap(out, r.oldDataMap());
+		writeMap(out, r.extraAttributesMap());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public RowMap read(SpillBuffer in) throws IOException, ClassNotFoundException {
+		if ( in.readByte() == SERIALIZED_ROW )
+			return (RowMap) in.readSerialized();
+
+		String rowType = (String) readReference(in);
+		String database = (String) readReference(in);
+		String table = (String) readReference(in);
+		List<String> pkColumns = (List<String>) readReference(in);
+		String kafkaTopic = (String) readReference(in);
+		long timestampMillis = in.readSignedVarLong();
+
+		lastReadPosition = readPosition(in, lastReadPosition, null);
+		lastReadNextPosition = readPosition(in, lastReadNextPosition, lastReadPosition);
+
+		switch ( in.readByte() ) {
+			case NO_QUERY:
+				lastReadQuery = null;
+				break;
+			case NEW_QUERY:
+				lastReadQuery = in.readString();
+				break;
+		}
+
+		RowMap r = new RowMap(rowType, database, table, timestampMillis, pkColumns, lastReadPosition, lastReadNextPosition, lastReadQuery);
+		r.setKafkaTopic(kafkaTopic);
+
+		int flags = in.readByte();
+		if ( (flags & SUPPRESSED) != 0 )
+			r.suppress();
+		if ( (flags & TX_COMMIT) != 0 )
+			r.setTXCommit();
+
+		r.setXid(readNullableLong(in));
+		r.setXoffset(readNullableLong(in));
+		r.setServerId(readNullableLong(in));
+		r.setThreadId(readNullableLong(in));
+		r.setSchemaId(readNullableLong(in));
+		long approximateSize = in.readVarLong();
+
+		Map<String, Object> data = readMap(in);
+		Map<String, Object> oldData = readMap(in);
+		Map<String, Object> extraAttributes = readMap(in);
+		r.restore(data, oldData, extraAttributes, approximateSize);
+		return r;
+	}
+
+	private <K> void writeReference(SpillBuffer out, Map<K, Integer> ids, K o) {
+		if ( o == null ) {
+			out.writeVarLong(0);
+			return;
+		}
+
+		Integer id = ids.get(o);
+		if ( id == null ) {
+			id = dictionary.size();
+			dictionary.add(o);
+			ids.put(o, id);
+		}
+		out.writeVarLong(id + 1);
+	}
+
+	private Object readReference(SpillBuffer in) throws IOException {
+		int id = (int) in.readVarLong();
+		return id == 0 ? null : dictionary.get(id - 1);
+	}
+
+	private Position writePosition(SpillBuffer out, Position p, Position previous, Position same) {
+		if ( p == null ) {
+			out.writeByte(NO_POSITION);
+			return null;
+		} else if ( samePosition(p, previous) ) {
+			out.writeByte(PREVIOUS_POSITION);
+			return previous;
+		} else if ( samePosition(p, same) ) {
+			out.writeByte(SAME_AS_POSITION);
+			return p;
+		}
+
+		out.writeByte(NEW_POSITION);
+		BinlogPosition b = p.getBinlogPosition();
+		out.writeVarLong(p.getLastHeartbeatRead());
+		out.writeVarLong(b.getOffset());
+		writeReference(out, stringIds, b.getFile());
+		writeNullableString(out, b.getGtidSetStr());
+		writeNullableString(out, b.getGtid());
+		return p;
+	}
+
+	// Position.equals doesn't look at the gtid
+	private static boolean samePosition(Position a, Position b) {
+		if ( a == b )
+			return true;
+		else if ( b == null )
+			return false;
+
+		BinlogPosition x = a.getBinlogPosition(), y = b.getBinlogPosition();
+		return a.getLastHeartbeatRead() == b.getLastHeartbeatRead()
+			&& x.getOffset() == y.getOffset()
+			&& Objects.equals(x.getFile(), y.getFile())
+			&& Objects.equals(x.getGtidSetStr(), y.getGtidSetStr())
+			&& Objects.equals(x.getGtid(), y.getGtid());
+	}
+
+	private Position readPosition(SpillBuffer in, Position previous, Position same) throws IOException {
+		switch ( in.readByte() ) {
+			case NO_POSITION:
+				return null;
+			case PREVIOUS_POSITION:
+				return previous;
+			case SAME_AS_POSITION:
+				return same;
+		}
+
+		long lastHeartbeatRead = in.readVarLong();
+		long offset = in.readVarLong();
+		String file = (String) readReference(in);
+		String gtidSetStr = readNullableString(in);
+		String gtid = readNullableString(in);
+		return new Position(new BinlogPosition(gtidSetStr, gtid, offset, file), lastHeartbeatRead);
+	}
+
+	private void writeMap(SpillBuffer out, Map<String, Object> map) throws IOException {
+		if ( map.isEmpty() ) {
+			out.writeByte(NO_MAP);
+		} else if ( map instanceof ColumnValueMap ) {
+			ColumnValueMap columns = (ColumnValueMap) map;
+			out.writeByte(COLUMN_MAP);
+			writeReference(out, objectIds, columns.getLayout());
+
+			for ( int i = 0; i < columns.getLayout().size(); i++ ) {
+				if ( !columns.containsColumn(i) ) {
+					out.writeByte(ABSENT);
+				} else {
+					out.writeByte(columns.isRaw(i) ? RAW : DECODED);
+					writeValue(out, columns.getStored(i));
+				}
+			}
+
+			Map<String, Object> overflow = columns.getOverflow();
+			if ( overflow == null )
+				out.writeVarLong(0);
+			else
+				writeEntries(out, overflow);
+		} else {
+			out.writeByte(PLAIN_MAP);
+			writeEntries(out, map);
+		}
+	}
+
+	private void writeEntries(SpillBuffer out, Map<String, Object> map) throws IOException {
+		out.writeVarLong(map.size());
+		for ( Map.Entry<String, Object> e : map.entrySet() ) {
+			out.writeString(e.getKey());
+			writeValue(out, e.getValue());
+		}
+	}
+
+	private Map<String, Object> readMap(SpillBuffer in) throws IOException, ClassNotFoundException {
+		switch ( in.readByte() ) {
+			case NO_MAP:
+				return null;
+			case PLAIN_MAP:
+				return readEntries(in, new LinkedHashMap<>());
+		}
+
+		ColumnLayout layout = (ColumnLayout) readReference(in);
+		ColumnValueMap columns = new ColumnValueMap(layout);
+		for ( int i = 0; i < layout.size(); i++ ) {
+			switch ( in.readByte() ) {
+				case RAW:
+					columns.putRaw(i, (Serializable) readValue(in));
+					break;
+				case DECODED:
+					columns.putDecoded(i, readValue(in));
+					break;
+			}
+		}
+		return readEntries(in, columns);
+	}
+
+	private Map<String, Object> readEntries(SpillBuffer in, Map<String, Object> map) throws IOException, ClassNotFoundException {
+		long size = in.readVarLong();
+		for ( long i = 0; i < size; i++ )
+			map.put(in.readString(), readValue(in));
+		return map;
+	}
+
+	private void writeValue(SpillBuffer out, Object value) throws IOException {
+		if ( value == null ) {
+			out.writeByte(NULL);
+		} else if ( value instanceof String ) {
+			out.writeByte(STRING);
+			out.writeString((String) value);
+		} else if ( value instanceof byte[] ) {
+			out.writeByte(BYTES);
+			out.writeBytes((byte[]) value);
+		} else if ( value instanceof Integer ) {
+			out.writeByte(INTEGER);
+			out.writeSignedVarLong((Integer) value);
+		} else if ( value instanceof Long ) {
+			out.writeByte(LONG);
+			out.writeSignedVarLong((Long) value);
+		} else if ( value instanceof Double ) {
+			out.writeByte(DOUBLE);
+			out.writeLong(Double.doubleToRawLongBits((Double) value));
+		} else if ( value instanceof Float ) {
+			out.writeByte(FLOAT);
+			out.writeVarLong(Float.floatToRawIntBits((Float) value) & 0xFFFFFFFFL);
+		} else if ( value instanceof Boolean ) {
+			out.writeByte((Boolean) value ? TRUE : FALSE);
+		} else if ( value instanceof BigDecimal ) {
+			BigDecimal d = (BigDecimal) value;
+			out.writeByte(BIG_DECIMAL);
+			out.writeSignedVarLong(d.scale());
+			out.writeBytes(d.unscaledValue().toByteArray());
+		} else if ( value instanceof BigInteger ) {
+			out.writeByte(BIG_INTEGER);
+			out.writeBytes(((BigInteger) value).toByteArray());
+		} else if ( value instanceof RawJSONString ) {
+			out.writeByte(RAW_JSON);
+			out.writeString(((RawJSONString) value).json);
+		} else if ( value.getClass() == ArrayList.class ) {
+			List<?> list = (List<?>) value;
+			out.writeByte(LIST);
+			out.writeVarLong(list.size());
+			for ( Object o : list )
+				writeValue(out, o);
+		} else if ( value.getClass() == BitSet.class ) {
+			out.writeByte(BIT_SET);
+			out.writeBytes(((BitSet) value).toByteArray());
+		} else if ( value instanceof Serializable ) {
+			out.writeByte(SERIALIZED);
+			out.writeSerialized(value);
+		} else {
+			throw new IOException("can't spill a value of " + value.getClass() + ": not serializable");
+		}
+	}
+
+	private Object readValue(SpillBuffer in) throws IOException, ClassNotFoundException {
+		int tag = in.readByte();
+		switch ( tag ) {
+			case NULL:
+				return null;
+			case STRING:
+				return in.readString();
+			case BYTES:
+				return in.readBytes();
+			case INTEGER:
+				return (int) in.readSignedVarLong();
+			case LONG:
+				return in.readSignedVarLong();
+			case DOUBLE:
+				return Double.longBitsToDouble(in.readLong());
+			case FLOAT:
+				return Float.intBitsToFloat((int) in.readVarLong());
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case BIG_DECIMAL:
+				int scale = (int) in.readSignedVarLong();
+				return new BigDecimal(new BigInteger(in.readBytes()), scale);
+			case BIG_INTEGER:
+				return new BigInteger(in.readBytes());
+			case RAW_JSON:
+				return new RawJSONString(in.readString());
+			case LIST:
+				int size = (int) in.readVarLong();
+				ArrayList<Object> list = new ArrayList<>(size);
+				for ( int i = 0; i < size; i++ )
+					list.add(readValue(in));
+				return list;
+			case BIT_SET:
+				return BitSet.valueOf(in.readBytes());
+			case SERIALIZED:
+				return in.readSerialized();
+			default:
+				throw new IOException("unknown value tag in spill record: " + tag);
+		}
+	}
+
+	private static void writeNullableLong(SpillBuffer out, Long l) {
+		if ( l == null ) {
+			out.writeByte(0);
+		} else {
+			out.writeByte(1);
+			out.writeSignedVarLong(l);
+		}
+	}
+
+	private static Long readNullableLong(SpillBuffer in) throws IOException {
+		return in.readByte() == 0 ? null : in.readSignedVarLong();
+	}
+
+	private static void writeNullableString(SpillBuffer out, String s) {
+		if ( s == null ) {
+			out.writeByte(0);
+		} else {
+			out.writeByte(1);
+			out.writeString(s);
+		}
+	}
+
+	private static String readNullableString(SpillBuffer in) throws IOException {
+		return in.readByte() == 0 ? null : in.readString();
+	}
+}
@@ -0,0 +1,21 @@
+package com.zendesk.maxwell.row;
+
+import com.zendesk.maxwell.replication.Position;
+
+import java.util.ArrayList;
+
+/**
+ * Emitted at the end of a transaction when transactions are streamed
+ * (`stream_transactions`).  The rows of a streamed transaction go out as they
+ * are read, before mysql has told us the xid; this record carries the xid and
+ * `commit: true` once the COMMIT arrives, and is the only row of the transaction
+ * that advances the stored binlog position.
+ *
+ * It takes the database and table of the last row in the transaction.
+ */
+public class TransactionCommitRowMap extends RowMap {
+	public TransactionCommitRowMap(String database, String table, Long timestampMillis, Position position, Position nextPosition) {
+		super("commit", database, table, timestampMillis, new ArrayList<String>(), position, nextPosition, null);
+		setTXCommit();
+	}
+}
@@ -1,6 +1,7 @@
 package com.zendesk.maxwell.schema;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import com.zendesk.maxwell.CaseSensitivity;
@@ -12,6 +13,8 @@ public class Database {
 	private final List<Table> tableList;
 	private String charset;
 	private CaseSensitivity sensitivity;
+	// lookup key -> table, built on demand; see indexKey()
+	private HashMap<String, Table> tableIndex;
 
 	public Database(String name, List<Table> tables, String charset) {
 		this.name = name;
@@ -41,12 +44,31 @@ public class Database {
 			return a.toLowerCase().equals(b.toLowerCase());
 	}
 
+	private String indexKey(String name) {
+		if ( sensitivity == CaseSensitivity.CASE_SENSITIVE )
+			return name;
+		else
+			return name.toLowerCase();
+	}
+
+	private HashMap<String, Table> getTableIndex() {
+		if ( tableIndex == null ) {
+			tableIndex = new HashMap<>(tableList.size() * 2);
+			for ( Table t : this.tableList )
+				tableIndex.putIfAbsent(indexKey(t.getName()), t);
+		}
+		return tableIndex;
+	}
+
 	public Table findTable(String name) {
-		for ( Table t: this.tableList ) {
-			if ( compareTableNames(name, t.getName()))
-				return t;
+		Table t = getTableIndex().get(indexKey(name));
+
+		// guard against a table renamed behind our back
+		if ( t != null && !compareTableNames(name, t.getName()) ) {
+			tableIndex = null;
+			t = getTableIndex().get(indexKey(name));
 		}
-		return null;
+		return t;
 	}
 
 	public Table findTableOrThrow(String table) throws InvalidSchemaError {
@@ -63,8 +85,10 @@ public class Database {
 
 	public void removeTable(String name) {
 		Table t = findTable(name);
-		if ( t != null )
+		if ( t != null ) {
 			tableList.remove(t);
+			tableIndex = null;
+		}
 	}
 
 	public Database copy() {
@@ -119,6 +143,12 @@ public class Database {
 	public void addTable(Table table) {
 		table.setDatabase(this.name);
 		this.tableList.add(table);
+		indexTable(table);
+	}
+
+	private void indexTable(Table table) {
+		if ( tableIndex != null )
+			tableIndex.putIfAbsent(indexKey(table.getName()), table);
 	}
 
 	public Table buildTable(String name, String charset, List<ColumnDef> list, List<String> pks) {
@@ -130,6 +160,7 @@ public class Database {
 
 		Table t = new Table(this.name, name, charset, list, pks);
 		this.tableList.add(t);
+		indexTable(t);
 		return t;
 	}
 
@@ -139,5 +170,6 @@ public class Database {
 
 	public void setSensitivity(CaseSensitivity sensitivity) {
 		this.sensitivity = sensitivity;
+		this.tableIndex = null;
 	}
 }
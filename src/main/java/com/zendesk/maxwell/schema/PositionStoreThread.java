@@ -14,6 +14,8 @@ import com.zendesk.maxwell.util.RunLoopProcess;
 
 public class PositionStoreThread extends RunLoopProcess implements Runnable {
 	static final Logger LOGGER = LoggerFactory.getLogger(PositionStoreThread.class);
+	// while catching up, store positions this often rather than every second
+	static final long CATCHUP_STORE_INTERVAL_MS = 10000L;
 	private Position position; // in memory position
 	private Position storedPosition; // position as flushed to storage
 	private final MysqlPositionStore store;
@@ -22,6 +24,7 @@ public class PositionStoreThread extends RunLoopProcess implements Runnable {
 	private Thread thread;
 	private BinlogPosition lastHeartbeatSentFrom; // last position we sent a heartbeat from
 	private long lastHeartbeatSent;
+	private long lastStoredAt;
 	private BinlogBootstrapEvent binlogBootstrapEvent;
 
 	public PositionStoreThread(MysqlPositionStore store, MaxwellContext context) {
@@ -88,7 +91,8 @@ public class PositionStoreThread extends RunLoopProcess implements Runnable {
 		BinlogPosition currentBinlog = currentPosition.getBinlogPosition();
 		if ( !lastHeartbeatSentFrom.getFile().equals(currentBinlog.getFile()) )
 			return true;
-		if ( currentBinlog.getOffset() - lastHeartbeatSentFrom.getOffset() > 1000 ) {
+		// replaying a backlog moves the offset constantly; fall back to the timer below
+		if ( currentBinlog.getOffset() - lastHeartbeatSentFrom.getOffset() > 1000 && !isCatchingUp() ) {
 			return true;
 		}
 
@@ -105,9 +109,10 @@ public class PositionStoreThread extends RunLoopProcess implements Runnable {
 		Position newPosition = position;
 		LOGGER.info("PositionStoreThread-->work 调用了，newPosition：{}",newPosition);
 
-		if ( newPosition != null && newPosition.newerThan(storedPosition) ) {
+		if ( newPosition != null && newPosition.newerThan(storedPosition) && shouldStore() ) {
 			store.set(newPosition);
 			storedPosition = newPosition;
+			lastStoredAt = System.currentTimeMillis();
 		}
 
 		try { Thread.sleep(1000); } catch (InterruptedException e) { }
@@ -132,6 +137,21 @@ public class PositionStoreThread extends RunLoopProcess implements Runnable {
 		}
 	}
 
+	private boolean isCatchingUp() {
+		return context.getCatchUpMode().isActive();
+	}
+
+	/**
+	 * While catching up, a restart replays a few seconds more of the backlog rather than
+	 * have us write a position row every second.
+	 */
+	private boolean shouldStore() {
+		if ( !isCatchingUp() )
+			return true;
+
+		return System.currentTimeMillis() - lastStoredAt >= CATCHUP_STORE_INTERVAL_MS;
+	}
+
 	public synchronized void setPosition(Position p) {
 		if ( position == null || p.newerThan(position) ) {
 			position = p;
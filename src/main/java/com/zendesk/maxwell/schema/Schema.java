@@ -6,6 +6,7 @@ import com.zendesk.maxwell.schema.ddl.InvalidSchemaError;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 
@@ -13,6 +14,8 @@ public class Schema {
 	private final ArrayList<Database> databases;
 	private final String charset;
 	private final CaseSensitivity sensitivity;
+	// lookup key -> database, built on demand
+	private HashMap<String, Database> databaseIndex;
 
 	public Schema(List<Database> databases, String charset, CaseSensitivity sensitivity) {
 		this.sensitivity = sensitivity;
@@ -34,16 +37,21 @@ public class Schema {
 		return names;
 	}
 
+	private String indexKey(String name) {
+		if ( sensitivity == CaseSensitivity.CASE_SENSITIVE )
+			return name;
+		else
+			return name.toLowerCase();
+	}
+
 	public Database findDatabase(String string) {
-		for ( Database d: this.databases ) {
-			if ( sensitivity == CaseSensitivity.CASE_SENSITIVE ) {
-				if ( d.getName().equals(string) ) return d;
-			} else {
-				if ( d.getName().toLowerCase().equals(string.toLowerCase()) ) return d;
-			}
+		if ( databaseIndex == null ) {
+			databaseIndex = new HashMap<>(databases.size() * 2);
+			for ( Database d : this.databases )
+				databaseIndex.putIfAbsent(indexKey(d.getName()), d);
 		}
 
-		return null;
+		return databaseIndex.get(indexKey(string));
 	}
 
 	public Database findDatabaseOrThrow(String name) throws InvalidSchemaError {
@@ -60,6 +68,13 @@ public class Schema {
 	public void addDatabase(Database d) {
 		d.setSensitivity(sensitivity);
 		this.databases.add(d);
+		if ( databaseIndex != null )
+			databaseIndex.putIfAbsent(indexKey(d.getName()), d);
+	}
+
+	public void removeDatabase(Database d) {
+		this.databases.remove(d);
+		this.databaseIndex = null;
 	}
 
 	private void diffDBList(List<String> diff, Schema a, Schema b, String nameA, String nameB, boolean recurse) {
@@ -100,8 +100,10 @@ public class Table {
 		ArrayList<ColumnDef> list = new ArrayList<>();
 		ArrayList<String> pkList = new ArrayList<>();
 
+		// column definitions are altered in place by DDL (charset conversion, renumbering),
+		// so the copy gets its own; rows read under the old definition keep decoding with it.
 		for ( ColumnDef c : columns ) {
-			list.add(c);
+			list.add(c.clone());
 		}
 
 		for ( String s : pkColumnNames ) {
@@ -19,6 +19,12 @@ public class DateColumnDef extends ColumnDef {
 		if ( value instanceof Long && (Long) value == Long.MIN_VALUE )
 			return "0000-00-00";
 
+		if ( value instanceof Long ) {
+			String formatted = DateFormatter.formatDateMicros((Long) value);
+			if ( formatted != null )
+				return formatted;
+		}
+
 		return DateFormatter.formatDate(value);
 	}
 }
@@ -112,6 +112,125 @@ public class DateFormatter {
 		return formatDateTime(cal);
 	}
 
+	/*
+		Fast paths for the epoch-microsecond values the binlog gives us, which we used to
+		put through a Calendar.  These do the calendar arithmetic themselves and write
+		straight into the thread's StringBuilder.  They only cover the proleptic
+		Gregorian range a Calendar agrees with (1582-10-15 through 9999-12-31) and
+		return null for anything else, leaving it to the Calendar code.
+	*/
+	private static final long GREGORIAN_CUTOVER_MICROS = -12219292800000000L; // 1582-10-15 00:00:00 UTC
+	private static final long YEAR_10000_MICROS = 253402300800000000L;
+	private static final long MICROS_PER_DAY = 86400L * 1000000L;
+	private static final int[] FRACTION_DIVISORS = { 1000000, 100000, 10000, 1000, 100, 10, 1 }; // 10^(6 - i)
+
+	private static boolean inGregorianRange(long micros) {
+		return micros >= GREGORIAN_CUTOVER_MICROS && micros < YEAR_10000_MICROS;
+	}
+
+	// days since 1970-01-01 to yyyy-MM-dd, after Howard Hinnant's civil_from_days
+	private static void appendCivilDate(StringBuilder sb, long epochDay) {
+		long z = epochDay + 719468;
+		long era = floorDiv(z, 146097);
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+		zeroPad(sb, year, 4);
+		sb.append('-');
+		zeroPad(sb, month, 2);
+		sb.append('-');
+		zeroPad(sb, day, 2);
+	}
+
+	private static void appendTimeOfDay(StringBuilder sb, int secondOfDay) {
+		zeroPad(sb, secondOfDay / 3600, 2);
+		sb.append(':');
+		zeroPad(sb, secondOfDay / 60 % 60, 2);
+		sb.append(':');
+		zeroPad(sb, secondOfDay % 60, 2);
+	}
+
+	// the first `precision` digits of a microsecond fraction, as appendFractionalSeconds does it
+	private static void appendFraction(StringBuilder sb, int micros, int precision) {
+		if ( precision <= 0 )
+			return;
+		sb.append('.');
+		int digits = micros / FRACTION_DIVISORS[precision];
+		for ( int divisor = FRACTION_DIVISORS[7 - precision]; divisor > 0; divisor /= 10 )
+			sb.append((char) ('0' + digits / divisor % 10));
+	}
+
+	/**
+	 * A DATE given as UTC epoch-micros, or null if it's out of the fast path's range.
+	 */
+	public static String formatDateMicros(long micros) {
+		if ( !inGregorianRange(micros) )
+			return null;
+
+		StringBuilder sb = stringBuilderThreadLocal.get();
+		sb.setLength(0);
+		appendCivilDate(sb, floorDiv(micros, MICROS_PER_DAY));
+		return sb.toString();
+	}
+
+	/**
+	 * A DATETIME or TIMESTAMP given as UTC epoch-micros, with `precision` fractional
+	 * digits, or null if it's out of the fast path's range.
+	 */
+	public static String formatDateTimeMicros(long micros, int precision) {
+		if ( !inGregorianRange(micros) || precision > 6 )
+			return null;
+
+		StringBuilder sb = stringBuilderThreadLocal.get();
+		sb.setLength(0);
+		long epochDay = floorDiv(micros, MICROS_PER_DAY);
+		long microOfDay = micros - epochDay * MICROS_PER_DAY;
+
+		appendCivilDate(sb, epochDay);
+		sb.append(' ');
+		appendTimeOfDay(sb, (int) (microOfDay / 1000000));
+		appendFraction(sb, (int) (microOfDay % 1000000), precision);
+		return sb.toString();
+	}
+
+	/**
+	 * A TIME given as micros since midnight (the binlog's epoch-micros on 1970-01-01 UTC),
+	 * with `precision` fractional digits.  Null for negative values.
+	 */
+	public static String formatTimeMicros(long micros, int precision) {
+		if ( micros < 0 || precision > 6 )
+			return null;
+
+		StringBuilder sb = stringBuilderThreadLocal.get();
+		sb.setLength(0);
+		appendTimeOfDay(sb, (int) (micros / 1000000 % 86400));
+		appendFraction(sb, (int) (micros % 1000000), precision);
+		return sb.toString();
+	}
+
+	/**
+	 * HH:mm:ss of `millis` in UTC.  TIME values are offsets from midnight UTC, so
+	 * unlike java.sql.Time this doesn't depend on the JVM's time zone.
+	 */
+	public static String formatTime(long millis) {
+		Calendar cal = calendarUTCThreadLocal.get();
+		cal.setTimeInMillis(millis);
+
+		StringBuilder sb = stringBuilderThreadLocal.get();
+		sb.setLength(0);
+		zeroPad(sb, cal.get(Calendar.HOUR_OF_DAY), 2);
+		sb.append(":");
+		zeroPad(sb, cal.get(Calendar.MINUTE), 2);
+		sb.append(":");
+		zeroPad(sb, cal.get(Calendar.SECOND), 2);
+		return sb.toString();
+	}
+
 	private static long floorDiv(long a, long b) {
 		return ((a < 0)?(a - (b - 1)):a) / b;
 	}
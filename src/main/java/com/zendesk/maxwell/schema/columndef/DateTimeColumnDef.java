@@ -14,6 +14,10 @@ public class DateTimeColumnDef extends ColumnDefWithLength {
 			Long v = (Long) value;
 			if ( v == Long.MIN_VALUE || (v == 0L && isTimestamp) )
 				return appendFractionalSeconds("0000-00-00 00:00:00", 0, columnLength);
+
+			String formatted = DateFormatter.formatDateTimeMicros(v, columnLength.intValue());
+			if ( formatted != null )
+				return formatted;
 		}
 
 		Timestamp ts = DateFormatter.extractTimestamp(value);
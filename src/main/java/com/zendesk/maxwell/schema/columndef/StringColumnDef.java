@@ -1,6 +1,7 @@
 package com.zendesk.maxwell.schema.columndef;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 
 import org.apache.commons.codec.binary.Base64;
@@ -12,6 +13,8 @@ import org.slf4j.LoggerFactory;
 
 public class StringColumnDef extends ColumnDef {
 	public String charset;
+	// charsetForCharset(), resolved on first use rather than for every value
+	private Charset resolvedCharset;
 
 	public StringColumnDef(String name, String type, short pos, String charset) {
 		super(name, type, pos);
@@ -24,11 +27,22 @@ public class StringColumnDef extends ColumnDef {
 
 	public void setCharset(String charset) {
 		this.charset = charset;
+		this.resolvedCharset = null;
 	}
 
 	public void setDefaultCharset(String e) {
-		if ( this.charset == null )
+		if ( this.charset == null ) {
 		  this.charset = e;
+		  this.resolvedCharset = null;
+		}
+	}
+
+	/**
+	 * Whether values of this column are UTF-8 bytes, which the JSON writer can copy
+	 * through as they are instead of decoding them to a String.
+	 */
+	public boolean isUTF8() {
+		return charset != null && !charset.equals("binary") && charsetForCharset().equals(StandardCharsets.UTF_8);
 	}
 
 	@Override
@@ -42,15 +56,22 @@ public class StringColumnDef extends ColumnDef {
 		}
 	}
 
-	// this could obviously be more complete.
 	private Charset charsetForCharset() {
+		Charset c = resolvedCharset;
+		if ( c == null )
+			resolvedCharset = c = resolveCharset(charset);
+		return c;
+	}
+
+	// this could obviously be more complete.
+	private static Charset resolveCharset(String charset) {
 		switch(charset.toLowerCase()) {
 		case "utf8": case "utf8mb4":
-			return Charset.forName("UTF-8");
+			return StandardCharsets.UTF_8;
 		case "latin1": case "ascii":
-			return Charset.forName("ISO-8859-1");
+			return StandardCharsets.ISO_8859_1;
 		case "ucs2":
-			return Charset.forName("UTF-16");
+			return StandardCharsets.UTF_16;
 		default:
 			try {
 				return Charset.forName(charset.toLowerCase());
@@ -16,8 +16,11 @@ public class TimeColumnDef extends ColumnDefWithLength {
 			return appendFractionalSeconds(timeAsStr, ((Timestamp) value).getNanos(), this.columnLength);
 
 		} else if ( value instanceof Long ) {
-			Time time = new Time((Long) value / 1000);
-			String timeAsStr = String.valueOf(time);
+			String formatted = DateFormatter.formatTimeMicros((Long) value, this.columnLength.intValue());
+			if ( formatted != null )
+				return formatted;
+
+			String timeAsStr = DateFormatter.formatTime((Long) value / 1000);
 
 			return appendFractionalSeconds(timeAsStr, (int) ((Long) value % 1000000) * 1000, this.columnLength);
 		} else {
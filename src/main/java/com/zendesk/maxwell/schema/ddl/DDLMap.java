@@ -48,6 +48,17 @@ public class DDLMap extends RowMap {
 
 	@Override
 	public String toJSON(MaxwellOutputConfig outputConfig) throws IOException {
+		Map<String, Object> map = toJSONMap(outputConfig);
+		return map == null ? null : new ObjectMapper().writeValueAsString(map);
+	}
+
+	@Override
+	public byte[] toJSONBytes(MaxwellOutputConfig outputConfig) throws IOException {
+		Map<String, Object> map = toJSONMap(outputConfig);
+		return map == null ? null : new ObjectMapper().writeValueAsBytes(map);
+	}
+
+	private Map<String, Object> toJSONMap(MaxwellOutputConfig outputConfig) {
 		if(!outputConfig.outputDDL)
 			return null;
 
@@ -67,7 +78,7 @@ public class DDLMap extends RowMap {
 		if ( outputConfig.includesSchemaId) {
 			map.put(FieldNames.SCHEMA_ID, this.schemaId);
 		}
-		return new ObjectMapper().writeValueAsString(map);
+		return map;
 	}
 
 	@Override
@@ -14,7 +14,7 @@ public class ResolvedDatabaseDrop extends ResolvedSchemaChange {
 	@Override
 	public void apply(Schema schema) throws InvalidSchemaError {
 		Database d = schema.findDatabaseOrThrow(database);
-		schema.getDatabases().remove(d);
+		schema.removeDatabase(d);
 	}
 
 	@Override
@@ -4,7 +4,6 @@ import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.row.RowMap;
 import com.zendesk.maxwell.schema.ddl.DDLMap;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 // we pass this little wrapper into the javascript interface.
@@ -17,7 +16,7 @@ public class WrappedDDLMap {
 		this.row = row;
 	}
 
-	public LinkedHashMap<String, Object> getExtra_attributes() {
+	public Map<String, Object> getExtra_attributes() {
 		return row.getExtraAttributes();
 	}
 
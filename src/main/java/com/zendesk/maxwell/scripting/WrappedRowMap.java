@@ -3,7 +3,7 @@ package com.zendesk.maxwell.scripting;
 import com.zendesk.maxwell.replication.BinlogPosition;
 import com.zendesk.maxwell.row.RowMap;
 
-import java.util.LinkedHashMap;
+import java.util.Map;
 
 // we pass this little wrapper into the javascript interface.
 // this class is here so that we're not exposing the full RowMap,
@@ -15,15 +15,15 @@ public class WrappedRowMap {
 		this.row = row;
 	}
 
-	public LinkedHashMap<String, Object> getData() {
+	public Map<String, Object> getData() {
 		return row.getData();
 	}
 
-	public LinkedHashMap<String, Object> getOld_data() {
+	public Map<String, Object> getOld_data() {
 		return row.getOldData();
 	}
 
-	public LinkedHashMap<String, Object> getExtra_attributes() {
+	public Map<String, Object> getExtra_attributes() {
 		return row.getExtraAttributes();
 	}
 
@@ -0,0 +1,228 @@
+package com.zendesk.maxwell.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/*
+   a SpillFile whose disk I/O happens on a thread of its own, so the thread
+   spilling to it (the replicator, reading a big transaction) doesn't wait on
+   the disk.
+
+   Appended records queue up in memory, MAX_IN_FLIGHT_BYTES at most, until
+   the I/O thread has written them; only when the queue is full does append
+   block.  When there's nothing to write, the I/O thread reads ahead up to
+   MAX_READ_AHEAD_BYTES of the records that haven't been read yet, so read
+   usually finds the next record already in memory.  Writes come first: a
+   transaction being spilled and drained at the same time mustn't fall
+   behind on the spilling side.
+ */
+public class AsyncSpillFile extends SpillFile {
+	static final Logger LOGGER = LoggerFactory.getLogger(AsyncSpillFile.class);
+	private static final long MAX_IN_FLIGHT_BYTES = 16 * 1024 * 1024;
+	private static final long MAX_READ_AHEAD_BYTES = 16 * 1024 * 1024;
+
+	private final ArrayDeque<byte[]> writes = new ArrayDeque<>();
+	private final ArrayDeque<byte[]> readAhead = new ArrayDeque<>();
+	private long writeBytes = 0;
+	private long readAheadBytes = 0;
+	private long recordsAppended = 0; // by the caller
+	private long recordsWritten = 0;  // by the I/O thread
+	private long recordsRead = 0;     // by the I/O thread, into readAhead
+	private boolean flushRequested = false;
+	private boolean busy = false;     // the I/O thread is working outside the lock
+	private boolean closed = false;
+	private IOException error;
+	private volatile long size = 0;
+	private final SpillBuffer ioBuffer = new SpillBuffer(); // the I/O thread's
+
+	private final Thread thread;
+
+	public AsyncSpillFile(File file, boolean compress) throws IOException {
+		this(file, compress, null);
+	}
+
+	AsyncSpillFile(File file, boolean compress, SpillPool pool) throws IOException {
+		super(file, compress, pool);
+		this.thread = new Thread(this::run, "maxwell-spill-" + file.getName());
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	@Override
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public void append(SpillBuffer record) throws IOException {
+		byte[] copy = Arrays.copyOf(record.array(), record.length());
+
+		synchronized(this) {
+			while ( writeBytes > 0 && writeBytes + copy.length > MAX_IN_FLIGHT_BYTES ) {
+				checkError();
+				waitForIO();
+			}
+			checkError();
+
+			writes.add(copy);
+			writeBytes += copy.length;
+			recordsAppended++;
+			notifyAll();
+		}
+	}
+
+	@Override
+	public synchronized void read(SpillBuffer into) throws IOException {
+		while ( readAhead.isEmpty() ) {
+			checkError();
+			if ( recordsRead >= recordsAppended )
+				throw new EOFException("read past the end of " + getFile());
+			waitForIO();
+		}
+
+		byte[] record = readAhead.poll();
+		readAheadBytes -= record.length;
+		notifyAll();
+
+		into.load(record);
+	}
+
+	/**
+	 * Wait for everything appended so far to be handed to the file.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		flushRequested = true;
+		notifyAll();
+
+		while ( flushRequested ) {
+			checkError();
+			waitForIO();
+		}
+	}
+
+	/**
+	 * Waits for the I/O thread to finish whatever write or read it's in the
+	 * middle of, then throws away everything queued in either direction.
+	 */
+	@Override
+	synchronized void reset(long keepBytes) throws IOException {
+		while ( busy ) {
+			checkError();
+			waitForIO();
+		}
+		checkError();
+
+		writes.clear();
+		readAhead.clear();
+		writeBytes = 0;
+		readAheadBytes = 0;
+		recordsAppended = 0;
+		recordsWritten = 0;
+		recordsRead = 0;
+		flushRequested = false;
+		size = 0;
+		super.reset(keepBytes);
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			closed = true;
+			notifyAll();
+		}
+
+		try {
+			thread.join();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		super.close();
+	}
+
+	private void waitForIO() throws IOException {
+		try {
+			wait();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted waiting on " + getFile(), e);
+		}
+	}
+
+	private void checkError() throws IOException {
+		if ( error != null )
+			throw new IOException("error spilling to " + getFile(), error);
+	}
+
+	private boolean canReadAhead() {
+		return recordsRead < recordsWritten && readAheadBytes < MAX_READ_AHEAD_BYTES;
+	}
+
+	private void run() {
+		try {
+			while ( true ) {
+				byte[] write = null;
+				boolean flush = false;
+
+				synchronized(this) {
+					while ( !closed && writes.isEmpty() && !flushRequested && !canReadAhead() )
+						wait();
+
+					if ( closed )
+						return;
+					else if ( !writes.isEmpty() )
+						write = writes.peek(); // still counts against the in-flight bytes until it's written
+					else
+						flush = flushRequested;
+					busy = true;
+				}
+
+				if ( write != null ) {
+					super.append(write, write.length);
+					synchronized(this) {
+						writes.poll();
+						writeBytes -= write.length;
+						recordsWritten++;
+						size = super.getSize();
+						busy = false;
+						notifyAll();
+					}
+				} else if ( flush ) {
+					super.flush();
+					synchronized(this) {
+						flushRequested = false;
+						busy = false;
+						notifyAll();
+					}
+				} else {
+					super.read(ioBuffer);
+					byte[] record = ioBuffer.copyRecord();
+					synchronized(this) {
+						readAhead.add(record);
+						readAheadBytes += record.length;
+						recordsRead++;
+						busy = false;
+						notifyAll();
+					}
+				}
+			}
+		} catch ( InterruptedException e ) {
+			synchronized(this) {
+				error = new IOException("spill thread interrupted", e);
+				notifyAll();
+			}
+		} catch ( Exception e ) {
+			LOGGER.error("error spilling to " + getFile(), e);
+			synchronized(this) {
+				error = e instanceof IOException ? (IOException) e : new IOException(e);
+				notifyAll();
+			}
+		}
+	}
+}
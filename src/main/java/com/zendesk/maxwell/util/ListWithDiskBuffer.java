@@ -9,25 +9,44 @@ import java.util.*;
 /*
    a wrapper class for a linked list that will keep N tail elements
    in memory, spilling its head onto disk as needed.
+
+   Spilled elements are encoded by a SpillCodec into a SpillFile taken from
+   a SpillPool, and the file goes back to the pool as soon as everything in
+   it has been read; without a codec of its own the list falls back to java
+   serialization.  close() gives back whatever the list still holds.  Given an
+   OffHeapPool, the list spills into off-heap memory first, and only goes to
+   disk once the pool's budget is used up.  The oldest elements are off-heap,
+   then on disk, then on the heap; once anything is on disk, newer spills go
+   there too until it's been read back, which keeps them in order.
  */
-public class ListWithDiskBuffer<T> {
+public class ListWithDiskBuffer<T> implements Closeable {
 	static final Logger LOGGER = LoggerFactory.getLogger(ListWithDiskBuffer.class);
 	private final long maxInMemoryElements;
 	private final LinkedList<T> list;
+	private final SpillCodec<T> codec;
+	private final SpillPool spillPool;
+	private final SpillBuffer spillBuffer = new SpillBuffer();
+	private final OffHeapQueue offHeap;
+	private long elementsOffHeap = 0;
 	private long elementsInFile = 0;
-	private File file;
-	private ObjectInputStream is;
-	private ObjectOutputStream os;
+	private SpillFile file;
 
 	public ListWithDiskBuffer(long maxInMemoryElements) {
+		this(maxInMemoryElements, new SpillCodec.Serializing<>(), new SpillPool(), null);
+	}
+
+	public ListWithDiskBuffer(long maxInMemoryElements, SpillCodec<T> codec, SpillPool spillPool, OffHeapPool offHeapPool) {
 		this.maxInMemoryElements = maxInMemoryElements;
+		this.codec = codec;
+		this.spillPool = spillPool;
+		this.offHeap = offHeapPool == null ? null : new OffHeapQueue(offHeapPool);
 		list = new LinkedList<>();
 	}
 
 	public void add(T element) throws IOException {
 		list.add(element);
 
-		while ( shouldBuffer() )
+		while ( !list.isEmpty() && shouldBuffer() )
 			evict();
 	}
 
@@ -35,13 +54,12 @@ public class ListWithDiskBuffer<T> {
 		return this.list.size() > maxInMemoryElements;
 	}
 
-	protected void resetOutputStreamCaches() throws IOException {
-		os.reset();
-	}
-
 	public void flushToDisk() throws IOException {
-		if ( os != null )
-			os.flush();
+		if ( file != null ) {
+			long start = System.nanoTime();
+			file.flush();
+			spillPool.spent(System.nanoTime() - start);
+		}
 	}
 
 	public boolean isEmpty() {
@@ -53,15 +71,21 @@ public class ListWithDiskBuffer<T> {
 	}
 
 	public T removeFirst(Class<T> clazz) throws IOException, ClassNotFoundException {
-		if ( elementsInFile > 0 ) {
-			if ( is == null ) {
-				os.flush();
-				is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
-			}
+		if ( elementsOffHeap > 0 ) {
+			offHeap.poll(spillBuffer);
+			T element = clazz.cast(codec.read(spillBuffer));
+			if ( --elementsOffHeap == 0 )
+				offHeap.clear();
+
+			return element;
+		} else if ( elementsInFile > 0 ) {
+			long start = System.nanoTime();
+			file.read(spillBuffer);
+			spillPool.spent(System.nanoTime() - start);
 
-			Object object = is.readObject();
-			T element = clazz.cast(object);
-			elementsInFile--;
+			T element = clazz.cast(codec.read(spillBuffer));
+			if ( --elementsInFile == 0 )
+				releaseFile();
 
 			return element;
 		} else {
@@ -70,41 +94,79 @@ public class ListWithDiskBuffer<T> {
 	}
 
 	public Long size() {
-		return list.size() + elementsInFile;
+		return list.size() + elementsOffHeap + elementsInFile;
 	}
 
 	public Long inMemorySize() {
 		return Long.valueOf(list.size());
 	}
 
+	/**
+	 * @return bytes of off-heap memory holding spilled elements
+	 */
+	public long offHeapBytes() {
+		return offHeap == null ? 0 : offHeap.bytes();
+	}
+
+	/**
+	 * @return bytes written to the spill file so far
+	 */
+	public long spilledBytes() {
+		return file == null ? 0 : file.getSize();
+	}
+
+	/**
+	 * Drop whatever is still buffered, handing its off-heap memory back to
+	 * its pool.  A spill file with unread records in it is deleted rather
+	 * than reused.
+	 */
 	@Override
-	protected void finalize() throws Throwable {
-		try {
-			if ( file != null )
-				file.delete();
-		} finally {
-			super.finalize();
+	public void close() throws IOException {
+		list.clear();
+		elementsOffHeap = 0;
+
+		if ( offHeap != null )
+			offHeap.clear();
+
+		if ( file != null ) {
+			SpillFile f = file;
+			file = null;
+			if ( elementsInFile > 0 )
+				spillPool.discard(f);
+			else
+				spillPool.release(f);
 		}
+		elementsInFile = 0;
+	}
+
+	private void releaseFile() throws IOException {
+		SpillFile f = file;
+		file = null;
+		spillPool.release(f);
 	}
 
 	protected T evict() throws IOException {
-		if ( file == null ) {
-			file = File.createTempFile("maxwell", "events");
-			file.deleteOnExit();
-			os = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		T evicted = this.list.removeFirst();
+		spillBuffer.clear();
+		codec.write(evicted, spillBuffer);
+
+		if ( elementsInFile == 0 && offHeap != null && offHeap.offer(spillBuffer) ) {
+			elementsOffHeap++;
+			return evicted;
 		}
 
+		long start = System.nanoTime();
+		if ( file == null )
+			file = spillPool.acquire();
+
 		if ( elementsInFile == 0 )
-			LOGGER.info("Overflowed in-memory buffer, spilling over into " + file);
+			LOGGER.info("Overflowed in-memory buffer, spilling over into " + file.getFile());
 
-		T evicted = this.list.removeFirst();
-		os.writeObject(evicted);
+		file.append(spillBuffer);
+		spillPool.spent(System.nanoTime() - start);
 
 		elementsInFile++;
 
-		if ( elementsInFile % maxInMemoryElements == 0 )
-			resetOutputStreamCaches();
-
 		return evicted;
 	}
 
@@ -0,0 +1,53 @@
+package com.zendesk.maxwell.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/*
+   a fixed budget of off-heap memory, handed out in direct buffer chunks of
+   CHUNK_SIZE bytes.  Chunks are allocated the first time they're needed and
+   kept for reuse after that, so direct memory -- which the JVM only gives
+   back when it gets around to collecting the buffers -- stays at or under
+   the budget.  Shared by the buffers of one replicator.
+ */
+public class OffHeapPool {
+	public static final int CHUNK_SIZE = 1024 * 1024;
+
+	private final long maxChunks;
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+	private long allocatedChunks = 0;
+	private volatile long chunksInUse = 0;
+
+	public OffHeapPool(long budgetBytes) {
+		this.maxChunks = budgetBytes / CHUNK_SIZE;
+	}
+
+	/**
+	 * @return a cleared chunk, or null if the whole budget is in use
+	 */
+	public synchronized ByteBuffer take() {
+		ByteBuffer chunk = free.poll();
+		if ( chunk == null ) {
+			if ( allocatedChunks >= maxChunks )
+				return null;
+			chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			allocatedChunks++;
+		}
+
+		chunksInUse++;
+		return chunk;
+	}
+
+	public synchronized void release(ByteBuffer chunk) {
+		chunk.clear();
+		free.push(chunk);
+		chunksInUse--;
+	}
+
+	/**
+	 * @return bytes of the budget that hold data
+	 */
+	public long getBytesInUse() {
+		return chunksInUse * CHUNK_SIZE;
+	}
+}
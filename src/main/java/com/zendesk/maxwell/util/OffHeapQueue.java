@@ -0,0 +1,110 @@
+package com.zendesk.maxwell.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/*
+   a FIFO of length-prefixed records in chunks borrowed from an OffHeapPool.
+   Records are packed end to end and may span chunks; a chunk goes back to
+   the pool as soon as everything in it has been read.
+ */
+class OffHeapQueue {
+	private final OffHeapPool pool;
+	private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<>(); // a chunk's position is how much it holds
+	private final ArrayDeque<ByteBuffer> reserved = new ArrayDeque<>(); // taken for the record being added
+	private int readOffset = 0; // into the first chunk
+	private final byte[] header = new byte[4];
+
+	OffHeapQueue(OffHeapPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Append a record, unless the pool doesn't have room for it.
+	 *
+	 * @return whether the record was added
+	 */
+	boolean offer(SpillBuffer record) {
+		int length = record.length();
+		ByteBuffer tail = chunks.peekLast();
+		long room = tail == null ? 0 : tail.remaining();
+
+		while ( room < 4 + length ) {
+			ByteBuffer chunk = pool.take();
+			if ( chunk == null ) {
+				while ( !reserved.isEmpty() )
+					pool.release(reserved.poll());
+				return false;
+			}
+			reserved.add(chunk);
+			room += chunk.capacity();
+		}
+
+		header[0] = (byte) (length >>> 24);
+		header[1] = (byte) (length >>> 16);
+		header[2] = (byte) (length >>> 8);
+		header[3] = (byte) length;
+		put(header, 4);
+		put(record.array(), length);
+		return true;
+	}
+
+	private void put(byte[] src, int length) {
+		int offset = 0;
+		while ( offset < length ) {
+			ByteBuffer tail = chunks.peekLast();
+			if ( tail == null || !tail.hasRemaining() ) {
+				tail = reserved.poll();
+				chunks.add(tail);
+			}
+
+			int n = Math.min(tail.remaining(), length - offset);
+			tail.put(src, offset, n);
+			offset += n;
+		}
+	}
+
+	/**
+	 * Read the oldest record into `into`.
+	 */
+	void poll(SpillBuffer into) {
+		get(header, 4);
+		int length = (header[0] & 0xff) << 24 | (header[1] & 0xff) << 16 | (header[2] & 0xff) << 8 | (header[3] & 0xff);
+		get(into.prepareRead(length), length);
+	}
+
+	private void get(byte[] dst, int length) {
+		int offset = 0;
+		while ( offset < length ) {
+			ByteBuffer head = chunks.peek();
+			ByteBuffer b = head.duplicate();
+			b.limit(head.position()).position(readOffset);
+
+			int n = Math.min(b.remaining(), length - offset);
+			b.get(dst, offset, n);
+			offset += n;
+			readOffset += n;
+
+			if ( readOffset == head.capacity() ) {
+				pool.release(chunks.poll());
+				readOffset = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return bytes of off-heap memory held, including the unused end of the last chunk
+	 */
+	long bytes() {
+		return (long) chunks.size() * OffHeapPool.CHUNK_SIZE;
+	}
+
+	/**
+	 * Give every chunk back to the pool.
+	 */
+	void clear() {
+		while ( !chunks.isEmpty() )
+			pool.release(chunks.poll());
+		readOffset = 0;
+	}
+}
@@ -0,0 +1,200 @@
+package com.zendesk.maxwell.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/*
+   a growable byte array that one spilled element is encoded into, and
+   decoded back out of.  Integers are varints (zig-zag for signed ones), byte
+   arrays and strings are length-prefixed.
+ */
+public class SpillBuffer {
+	private byte[] bytes;
+	private int position;
+	private int limit;
+
+	public SpillBuffer() {
+		this.bytes = new byte[4096];
+	}
+
+	/**
+	 * Start writing a new element.
+	 */
+	public void clear() {
+		position = 0;
+		limit = 0;
+	}
+
+	/**
+	 * Make room for and return an array that `length` bytes can be read back
+	 * from, once the caller has filled it.
+	 */
+	byte[] prepareRead(int length) {
+		ensureCapacity(length);
+		position = 0;
+		limit = length;
+		return bytes;
+	}
+
+	/**
+	 * Copy a whole record in, to be read back.
+	 */
+	void load(byte[] record) {
+		System.arraycopy(record, 0, prepareRead(record.length), 0, record.length);
+	}
+
+	/**
+	 * @return a copy of the record that was last read in
+	 */
+	byte[] copyRecord() {
+		return Arrays.copyOf(bytes, limit);
+	}
+
+	byte[] array() {
+		return bytes;
+	}
+
+	int length() {
+		return position;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if ( bytes.length < capacity )
+			bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+	}
+
+	private void require(int n) throws IOException {
+		if ( position + n > limit )
+			throw new IOException("truncated spill record");
+	}
+
+	public void writeByte(int b) {
+		ensureCapacity(position + 1);
+		bytes[position++] = (byte) b;
+	}
+
+	public int readByte() throws IOException {
+		require(1);
+		return bytes[position++] & 0xff;
+	}
+
+	public void writeVarLong(long v) {
+		ensureCapacity(position + 10);
+		while ( (v & ~0x7FL) != 0 ) {
+			bytes[position++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		bytes[position++] = (byte) v;
+	}
+
+	public long readVarLong() throws IOException {
+		long v = 0;
+		for ( int shift = 0; shift < 64; shift += 7 ) {
+			int b = readByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 )
+				return v;
+		}
+		throw new IOException("malformed varint in spill record");
+	}
+
+	public void writeSignedVarLong(long v) {
+		writeVarLong((v << 1) ^ (v >> 63));
+	}
+
+	public long readSignedVarLong() throws IOException {
+		long v = readVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	public void writeLong(long v) {
+		ensureCapacity(position + 8);
+		for ( int i = 56; i >= 0; i -= 8 )
+			bytes[position++] = (byte) (v >>> i);
+	}
+
+	public long readLong() throws IOException {
+		require(8);
+		long v = 0;
+		for ( int i = 0; i < 8; i++ )
+			v = (v << 8) | (bytes[position++] & 0xff);
+		return v;
+	}
+
+	public void writeBytes(byte[] b) {
+		writeVarLong(b.length);
+		ensureCapacity(position + b.length);
+		System.arraycopy(b, 0, bytes, position, b.length);
+		position += b.length;
+	}
+
+	public byte[] readBytes() throws IOException {
+		int length = (int) readVarLong();
+		require(length);
+		byte[] b = Arrays.copyOfRange(bytes, position, position + length);
+		position += length;
+		return b;
+	}
+
+	/**
+	 * Write `s` as its length in chars followed by each char as 1 to 3 bytes of UTF-8.
+	 * Surrogates are encoded one at a time, so any String comes back exactly.
+	 */
+	public void writeString(String s) {
+		int length = s.length();
+		writeVarLong(length);
+		ensureCapacity(position + length * 3);
+
+		byte[] b = bytes;
+		int p = position;
+		for ( int i = 0; i < length; i++ ) {
+			char c = s.charAt(i);
+			if ( c < 0x80 ) {
+				b[p++] = (byte) c;
+			} else if ( c < 0x800 ) {
+				b[p++] = (byte) (0xC0 | (c >> 6));
+				b[p++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				b[p++] = (byte) (0xE0 | (c >> 12));
+				b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[p++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		position = p;
+	}
+
+	public String readString() throws IOException {
+		int length = (int) readVarLong();
+		char[] chars = new char[length];
+		for ( int i = 0; i < length; i++ ) {
+			int c = readByte();
+			if ( c >= 0xE0 )
+				c = (c & 0x0F) << 12 | (readByte() & 0x3F) << 6 | (readByte() & 0x3F);
+			else if ( c >= 0xC0 )
+				c = (c & 0x1F) << 6 | (readByte() & 0x3F);
+			chars[i] = (char) c;
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Java-serialize `o`, for values the caller has no compact encoding for.
+	 */
+	public void writeSerialized(Object o) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try ( ObjectOutputStream os = new ObjectOutputStream(out) ) {
+			os.writeObject(o);
+		}
+		writeBytes(out.toByteArray());
+	}
+
+	public Object readSerialized() throws IOException, ClassNotFoundException {
+		try ( ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(readBytes())) ) {
+			return is.readObject();
+		}
+	}
+}
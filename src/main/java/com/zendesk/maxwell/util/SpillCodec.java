@@ -0,0 +1,35 @@
+package com.zendesk.maxwell.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/*
+   how a ListWithDiskBuffer writes its elements to disk and reads them back.
+
+   A codec belongs to one buffer.  Elements are read back in the order they
+   were written, so a codec may keep state across elements -- say, writing
+   something shared in full the first time and as a reference after that.
+ */
+public interface SpillCodec<T> {
+	void write(T element, SpillBuffer out) throws IOException;
+
+	T read(SpillBuffer in) throws IOException, ClassNotFoundException;
+
+	/**
+	 * Plain java serialization, for element types without a codec of their own.
+	 */
+	class Serializing<T> implements SpillCodec<T> {
+		@Override
+		public void write(T element, SpillBuffer out) throws IOException {
+			if ( !(element instanceof Serializable) )
+				throw new IOException("can't spill " + element.getClass() + ": not serializable");
+			out.writeSerialized(element);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T read(SpillBuffer in) throws IOException, ClassNotFoundException {
+			return (T) in.readSerialized();
+		}
+	}
+}
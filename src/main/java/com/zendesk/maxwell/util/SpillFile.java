@@ -0,0 +1,240 @@
+package com.zendesk.maxwell.util;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+   an append-only file of length-prefixed records, read back front to back.
+
+   Each record is an 8 byte header -- the stored length and the original
+   length, which differ when the record is LZ4-compressed -- followed by the
+   record.  Writes go through a direct buffer to the file's channel.  Reads
+   come out of a second direct buffer, refilled a READ_AHEAD chunk at a time
+   with positional reads, so the records after the one being read are
+   usually already in memory by the time they're asked for.  Records bigger
+   than that are read straight into the caller's buffer.  Both buffers
+   belong to the file for its whole life and nothing is memory-mapped, so
+   reset() and close() leave nothing behind for the garbage collector to
+   unmap.
+
+   Files from a SpillPool are reset() and reused once they've been read
+   back; bytes written and read are counted against the pool.
+ */
+public class SpillFile implements Closeable {
+	private static final int HEADER = 8;
+	private static final int WRITE_BUFFER = 256 * 1024;
+	private static final int READ_AHEAD = 1024 * 1024;
+	private static final int MIN_COMPRESS = 64;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+	private final ByteBuffer header = ByteBuffer.allocate(HEADER);
+	private final LZ4Compressor compressor;
+	private final LZ4FastDecompressor decompressor;
+	private final SpillPool pool;
+	private byte[] compressed = new byte[0];
+
+	private long flushedPosition = 0; // bytes handed to the channel
+	private long readPosition = 0;
+	private ByteBuffer readAhead;    // allocated on the first read; its limit is how much of it is valid
+	private long readAheadStart = 0; // file offset of readAhead's first byte
+
+	public SpillFile(File file, boolean compress) throws IOException {
+		this(file, compress, null);
+	}
+
+	SpillFile(File file, boolean compress, SpillPool pool) throws IOException {
+		this.file = file;
+		this.pool = pool;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+
+		if ( compress ) {
+			LZ4Factory lz4 = LZ4Factory.fastestInstance();
+			this.compressor = lz4.fastCompressor();
+			this.decompressor = lz4.fastDecompressor();
+		} else {
+			this.compressor = null;
+			this.decompressor = null;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return bytes appended so far, headers included
+	 */
+	public long getSize() {
+		return flushedPosition + writeBuffer.position();
+	}
+
+	public void append(SpillBuffer record) throws IOException {
+		append(record.array(), record.length());
+	}
+
+	protected void append(byte[] bytes, int rawLength) throws IOException {
+		int length = rawLength;
+
+		if ( compressor != null && rawLength >= MIN_COMPRESS ) {
+			int max = compressor.maxCompressedLength(rawLength);
+			if ( compressed.length < max )
+				compressed = new byte[Math.max(max, compressed.length * 2)];
+
+			int compressedLength = compressor.compress(bytes, 0, rawLength, compressed, 0, max);
+			if ( compressedLength < rawLength ) {
+				bytes = compressed;
+				length = compressedLength;
+			}
+		}
+
+		if ( writeBuffer.remaining() < HEADER + length )
+			flushWrites();
+
+		writeBuffer.putInt(length).putInt(rawLength);
+		if ( length <= writeBuffer.remaining() ) {
+			writeBuffer.put(bytes, 0, length);
+		} else {
+			flushWrites();
+			writeFully(ByteBuffer.wrap(bytes, 0, length));
+		}
+	}
+
+	public void flush() throws IOException {
+		flushWrites();
+	}
+
+	private void flushWrites() throws IOException {
+		writeBuffer.flip();
+		writeFully(writeBuffer);
+		writeBuffer.clear();
+	}
+
+	private void writeFully(ByteBuffer b) throws IOException {
+		int n = b.remaining();
+		while ( b.hasRemaining() )
+			flushedPosition += channel.write(b, flushedPosition);
+
+		if ( pool != null )
+			pool.wrote(n);
+	}
+
+	/**
+	 * Read the next record into `into`.
+	 */
+	public void read(SpillBuffer into) throws IOException {
+		read(header, HEADER);
+		int length = header.getInt(0);
+		int rawLength = header.getInt(4);
+
+		if ( length == rawLength ) {
+			read(ByteBuffer.wrap(into.prepareRead(rawLength), 0, length), length);
+		} else {
+			if ( compressed.length < length )
+				compressed = new byte[Math.max(length, compressed.length * 2)];
+			read(ByteBuffer.wrap(compressed, 0, length), length);
+			decompressor.decompress(compressed, 0, into.prepareRead(rawLength), 0, rawLength);
+		}
+	}
+
+	private void read(ByteBuffer dst, int length) throws IOException {
+		dst.clear().limit(length);
+
+		if ( readPosition + length > flushedPosition )
+			flushWrites();
+		if ( readPosition + length > flushedPosition )
+			throw new EOFException("read past the end of " + file);
+
+		long start = readPosition;
+		readPosition += length;
+		if ( pool != null )
+			pool.read(length);
+
+		if ( length > READ_AHEAD ) {
+			readFully(dst, start);
+			return;
+		}
+
+		if ( !inReadAhead(start, length) ) {
+			if ( readAhead == null )
+				readAhead = ByteBuffer.allocateDirect(READ_AHEAD);
+
+			// everything up to flushedPosition is on disk, and that covers this record
+			readAhead.clear().limit((int) Math.min(READ_AHEAD, flushedPosition - start));
+			readFully(readAhead, start);
+			readAhead.flip();
+			readAheadStart = start;
+		}
+
+		ByteBuffer r = readAhead.duplicate();
+		r.position((int) (start - readAheadStart)).limit((int) (start - readAheadStart + length));
+		dst.put(r);
+	}
+
+	// fill dst's remaining space with the file's bytes from `position` on
+	private void readFully(ByteBuffer dst, long position) throws IOException {
+		while ( dst.hasRemaining() ) {
+			int n = channel.read(dst, position);
+			if ( n < 0 )
+				throw new EOFException("read past the end of " + file);
+			position += n;
+		}
+	}
+
+	private boolean inReadAhead(long start, int length) {
+		return readAhead != null && start >= readAheadStart && start + length <= readAheadStart + readAhead.limit();
+	}
+
+	/**
+	 * Fill the file out with zeros to `bytes`, so the filesystem allocates its
+	 * blocks now rather than as records are written.
+	 */
+	void preallocate(long bytes) throws IOException {
+		ByteBuffer zeros = ByteBuffer.allocate(WRITE_BUFFER);
+		for ( long p = channel.size(); p < bytes; ) {
+			zeros.clear().limit((int) Math.min(WRITE_BUFFER, bytes - p));
+			while ( zeros.hasRemaining() )
+				p += channel.write(zeros, p);
+		}
+	}
+
+	/**
+	 * Discard everything in the file, to reuse it.  The file is cut back to
+	 * `keepBytes` if a big spill grew it past that.
+	 */
+	void reset(long keepBytes) throws IOException {
+		if ( readAhead != null )
+			readAhead.clear().limit(0);
+		readAheadStart = 0;
+		writeBuffer.clear();
+		flushedPosition = 0;
+		readPosition = 0;
+
+		if ( channel.size() > keepBytes )
+			channel.truncate(keepBytes);
+	}
+
+	/**
+	 * Close and delete the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			raf.close();
+		} finally {
+			file.delete();
+		}
+	}
+}
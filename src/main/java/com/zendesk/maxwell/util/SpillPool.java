@@ -0,0 +1,184 @@
+package com.zendesk.maxwell.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+   the spill files of one replicator's buffers, in one directory.
+
+   A buffer takes a SpillFile when it first spills to disk and gives it back
+   once everything in it has been read, at which point the file is either
+   kept (up to `segments` of them) to be reused by the next buffer that
+   spills, or closed and deleted.  Files are created by the first transaction
+   that needs one, so a replicator that never spills never has one open --
+   unless the kept segments are given a size, in which case preallocate()
+   creates them up front, each filled out to `segmentBytes` so the filesystem
+   has already allocated the space by the time a transaction spills into it.
+   close() deletes every file, in use or not.
+
+   Also counts the bytes that go to and come back from the files, and the
+   time buffers spend spilling, for metrics.
+ */
+public class SpillPool {
+	private final File directory;
+	private final int segments;
+	private final long segmentBytes;
+	private final boolean compress;
+	private final boolean async;
+
+	private final ArrayDeque<SpillFile> idle = new ArrayDeque<>();
+	private final Set<SpillFile> inUse = new HashSet<>();
+
+	private final LongAdder bytesWritten = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder spillNanos = new LongAdder();
+
+	/**
+	 * A pool of plain spill files in the temp directory, deleted as soon as
+	 * they're drained.
+	 */
+	public SpillPool() {
+		this(null, 0, 0, false, false);
+	}
+
+	/**
+	 * @param directory where spill files go; null for the temp directory
+	 * @param segments how many drained files to keep for reuse
+	 * @param segmentBytes size to preallocate kept files to
+	 * @param compress LZ4-compress spilled records
+	 * @param async do file I/O on a background thread (see AsyncSpillFile)
+	 */
+	public SpillPool(File directory, int segments, long segmentBytes, boolean compress, boolean async) {
+		this.directory = directory;
+		this.segments = segments;
+		this.segmentBytes = segmentBytes;
+		this.compress = compress;
+		this.async = async;
+	}
+
+	/**
+	 * Create the segments that will be kept, so the first transactions to
+	 * spill don't have to.  Does nothing unless they have a size to be
+	 * preallocated to; otherwise they're created as they're needed.
+	 */
+	public synchronized void preallocate() throws IOException {
+		if ( segmentBytes <= 0 )
+			return;
+
+		while ( idle.size() + inUse.size() < segments ) {
+			SpillFile f = create();
+			f.preallocate(segmentBytes);
+			idle.push(f);
+		}
+	}
+
+	/**
+	 * @return an empty spill file, to be handed back with release()
+	 */
+	public synchronized SpillFile acquire() throws IOException {
+		SpillFile f = idle.poll();
+		if ( f == null )
+			f = create();
+
+		inUse.add(f);
+		return f;
+	}
+
+	/**
+	 * Give back a file that's no longer needed; what was in it is discarded.
+	 */
+	public synchronized void release(SpillFile f) throws IOException {
+		inUse.remove(f);
+
+		if ( idle.size() < segments ) {
+			try {
+				f.reset(segmentBytes);
+				idle.push(f);
+				return;
+			} catch ( IOException e ) {
+				f.close();
+				throw e;
+			}
+		}
+
+		f.close();
+	}
+
+	/**
+	 * Give back a file that wasn't read to the end, deleting it instead of
+	 * keeping it for reuse.
+	 */
+	public synchronized void discard(SpillFile f) throws IOException {
+		inUse.remove(f);
+		f.close();
+	}
+
+	/**
+	 * Close and delete every file, including the ones still in use.
+	 */
+	public synchronized void close() throws IOException {
+		IOException error = null;
+		for ( SpillFile f : idle ) {
+			try {
+				f.close();
+			} catch ( IOException e ) {
+				error = e;
+			}
+		}
+		for ( SpillFile f : inUse ) {
+			try {
+				f.close();
+			} catch ( IOException e ) {
+				error = e;
+			}
+		}
+		idle.clear();
+		inUse.clear();
+
+		if ( error != null )
+			throw error;
+	}
+
+	private SpillFile create() throws IOException {
+		File f = File.createTempFile("maxwell", ".spill", directory);
+		return async ? new AsyncSpillFile(f, compress, this) : new SpillFile(f, compress, this);
+	}
+
+	void wrote(long bytes) {
+		bytesWritten.add(bytes);
+	}
+
+	void read(long bytes) {
+		bytesRead.add(bytes);
+	}
+
+	void spent(long nanos) {
+		spillNanos.add(nanos);
+	}
+
+	/**
+	 * @return bytes written to spill files, headers included
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	/**
+	 * @return bytes read back from spill files, headers included
+	 */
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	/**
+	 * @return total time buffers have spent writing to, reading from and
+	 *         flushing spill files, in milliseconds
+	 */
+	public long getSpillTimeMillis() {
+		return spillNanos.sum() / 1000000;
+	}
+}
@@ -0,0 +1,196 @@
+package com.zendesk.maxwell.replication;
+
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.*;
+import com.zendesk.maxwell.monitoring.NoOpMetrics;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/*
+	the gtid-set snapshot is taken once per transaction, and every event in a
+	transaction carries the set as of the end of the previous one.
+
+	testAllocationPerEvent is a rough benchmark: it prints how many bytes the
+	listener allocates per event next to what a client.getGtidSet() call per
+	event -- what the listener used to do -- allocates on its own.
+ */
+public class BinlogConnectorEventListenerTest {
+	private static final int ROWS_PER_TRANSACTION = 10;
+
+	private static class CountingClient extends BinaryLogClient {
+		int gtidSetCalls = 0;
+
+		CountingClient() {
+			super("localhost", 3306, "maxwell", "maxwell");
+		}
+
+		@Override
+		public String getGtidSet() {
+			gtidSetCalls++;
+			return super.getGtidSet();
+		}
+
+		// the current set, without counting a call
+		String peek() {
+			return super.getGtidSet();
+		}
+	}
+
+	// a gtid set with `servers` uuids, as on a server that's been through a few failovers
+	private static String longGtidSet(int servers) {
+		StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < servers; i++ ) {
+			if ( i > 0 )
+				sb.append(",");
+			sb.append(UUID.randomUUID()).append(":1-").append(1000000 + i).append(":1000002-1000005");
+		}
+		return sb.toString();
+	}
+
+	private static long position = 4;
+
+	private static Event event(EventType type, EventData data) {
+		EventHeaderV4 header = new EventHeaderV4();
+		header.setEventType(type);
+		header.setTimestamp(System.currentTimeMillis());
+		header.setEventLength(100);
+		position += 100;
+		header.setNextPosition(position);
+		return new Event(header, data);
+	}
+
+	private static Event query(String sql) {
+		QueryEventData data = new QueryEventData();
+		data.setSql(sql);
+		return event(EventType.QUERY, data);
+	}
+
+	private static List<Event> transaction(String gtid) {
+		List<Event> events = new ArrayList<>();
+
+		GtidEventData gtidData = new GtidEventData();
+		gtidData.setGtid(gtid);
+		events.add(event(EventType.GTID, gtidData));
+		events.add(query(BinlogConnectorEvent.BEGIN));
+
+		for ( int i = 0; i < ROWS_PER_TRANSACTION; i++ ) {
+			WriteRowsEventData rows = new WriteRowsEventData();
+			rows.setTableId(1);
+			rows.setIncludedColumns(new BitSet());
+			rows.setRows(Collections.<Serializable[]>emptyList());
+			events.add(event(EventType.EXT_WRITE_ROWS, rows));
+		}
+
+		XidEventData xid = new XidEventData();
+		xid.setXid(1);
+		events.add(event(EventType.XID, xid));
+		return events;
+	}
+
+	private static List<BinlogConnectorEvent> drain(BinlogEventQueue queue) throws InterruptedException {
+		List<BinlogConnectorEvent> events = new ArrayList<>();
+		BinlogConnectorEvent e;
+		while ( (e = queue.poll(0, TimeUnit.MILLISECONDS)) != null )
+			events.add(e);
+		return events;
+	}
+
+	@Test
+	public void testSnapshotOncePerTransaction() throws Exception {
+		CountingClient client = new CountingClient();
+		client.setGtidSet(longGtidSet(4));
+
+		BinlogEventQueue queue = new BinlogEventQueue(1000, 0);
+		BinlogConnectorEventListener listener = new BinlogConnectorEventListener(client, queue, new NoOpMetrics(), new CatchUpMode(0));
+
+		String before = client.peek();
+
+		// the client adds a transaction's gtid before it hands us the XID; fake that here
+		for ( int t = 0; t < 3; t++ ) {
+			for ( Event e : transaction(null) ) {
+				if ( e.getHeader().getEventType() == EventType.XID )
+					client.setGtidSet(longGtidSet(4));
+				listener.onEvent(e);
+			}
+
+			List<BinlogConnectorEvent> events = drain(queue);
+			BinlogConnectorEvent commit = events.get(events.size() - 1);
+
+			for ( BinlogConnectorEvent e : events.subList(0, events.size() - 1) )
+				assertEquals(before, e.getPosition().getGtidSetStr());
+
+			assertTrue(commit.isCommitEvent());
+			assertEquals(client.peek(), commit.getNextPosition().getGtidSetStr());
+			before = commit.getNextPosition().getGtidSetStr();
+		}
+
+		// the first event of all, then one per XID
+		assertEquals(1 + 3, client.gtidSetCalls);
+	}
+
+	@Test
+	public void testDDLAndRotateTakeSnapshot() throws Exception {
+		CountingClient client = new CountingClient();
+		client.setGtidSet(longGtidSet(1));
+
+		BinlogEventQueue queue = new BinlogEventQueue(1000, 0);
+		BinlogConnectorEventListener listener = new BinlogConnectorEventListener(client, queue, new NoOpMetrics(), new CatchUpMode(0));
+
+		// the very first event reads the set; BEGIN doesn't, the rest do
+		listener.onEvent(transaction(null).get(2));
+		listener.onEvent(query(BinlogConnectorEvent.BEGIN));
+		listener.onEvent(query(BinlogConnectorEvent.COMMIT));
+		listener.onEvent(query("CREATE TABLE t (id int)"));
+		listener.onEvent(event(EventType.ROTATE, new RotateEventData()));
+		assertEquals(4, client.gtidSetCalls);
+	}
+
+	@Test
+	public void testAllocationPerEvent() throws Exception {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		long thread = Thread.currentThread().getId();
+
+		CountingClient client = new CountingClient();
+		client.setGtidSet(longGtidSet(50));
+
+		BinlogEventQueue queue = new BinlogEventQueue(1000, 0);
+		BinlogConnectorEventListener listener = new BinlogConnectorEventListener(client, queue, new NoOpMetrics(), new CatchUpMode(0));
+
+		List<Event> transaction = transaction("00000000-0000-0000-0000-000000000000:1");
+		int transactions = 2000;
+		int events = transactions * transaction.size();
+
+		long start = threads.getThreadAllocatedBytes(thread);
+		for ( int t = 0; t < transactions; t++ ) {
+			for ( Event e : transaction )
+				listener.onEvent(e);
+			while ( queue.poll(0, TimeUnit.MILLISECONDS) != null )
+				;
+		}
+		long perEvent = (threads.getThreadAllocatedBytes(thread) - start) / events;
+
+		start = threads.getThreadAllocatedBytes(thread);
+		for ( int i = 0; i < events; i++ )
+			client.getGtidSet();
+		long perGtidSetCall = (threads.getThreadAllocatedBytes(thread) - start) / events;
+
+		System.out.println("gtid set of " + client.peek().length() + " chars: listener allocates "
+			+ perEvent + " bytes/event; client.getGtidSet() alone allocates " + perGtidSetCall + " bytes/call");
+
+		assertTrue(perEvent < perGtidSetCall);
+	}
+}
@@ -0,0 +1,157 @@
+package com.zendesk.maxwell.row;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.zendesk.maxwell.producer.EncryptionCipher;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+	round trips for both ciphers, through encrypt() and through the buffered
+	writeEncrypted() path rows take.
+
+	testAllocationPerMessage is a rough benchmark: it prints bytes allocated and
+	time per message for writeEncrypted() next to the way rows used to be
+	encrypted -- a new Cipher, SecureRandom and key per row, and the JSON and
+	ciphertext round-tripped through Strings.
+ */
+public class RowEncryptTest {
+	private static final String KEY = "aaaaaaaaaaaaaaaa";
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	private static String plaintext(int length) {
+		StringBuilder sb = new StringBuilder("{\"id\":1,\"text\":\"");
+		while ( sb.length() < length - 2 )
+			sb.append((char) ('a' + sb.length() % 26));
+		return sb.append("\"}").toString();
+	}
+
+	private static String writeEncrypted(String plaintext, EncryptionContext ctx, ByteArrayOutputStream out) throws Exception {
+		out.reset();
+		JsonGenerator g = jsonFactory.createGenerator(out);
+		byte[] bytes = plaintext.getBytes(StandardCharsets.UTF_8);
+		RowEncrypt.writeEncrypted(g, bytes, 0, bytes.length, ctx);
+		g.flush();
+
+		String quoted = out.toString("UTF-8");
+		return quoted.substring(1, quoted.length() - 1);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		for ( EncryptionCipher cipher : EncryptionCipher.values() ) {
+			for ( int length : new int[] { 2, 15, 16, 17, 100, 5000 } ) {
+				String plaintext = plaintext(length);
+
+				EncryptionContext ctx = EncryptionContext.create(KEY, cipher);
+				String encrypted = RowEncrypt.encrypt(plaintext, KEY, ctx.iv, cipher);
+				assertEquals(plaintext, RowEncrypt.decrypt(encrypted, KEY, Base64.encodeBase64String(ctx.iv), cipher));
+
+				// a fresh IV: the JDK won't encrypt twice with the same GCM key and IV
+				ctx = EncryptionContext.create(KEY, cipher);
+				String written = writeEncrypted(plaintext, ctx, new ByteArrayOutputStream());
+				if ( cipher == EncryptionCipher.CBC )
+					assertEquals(RowEncrypt.encrypt(plaintext, KEY, ctx.iv, cipher), written);
+				assertEquals(plaintext, RowEncrypt.decrypt(written, KEY, Base64.encodeBase64String(ctx.iv), cipher));
+			}
+		}
+	}
+
+	@Test
+	public void testIVLengths() throws Exception {
+		assertEquals(16, EncryptionContext.create(KEY).iv.length);
+		assertEquals(16, EncryptionContext.create(KEY, EncryptionCipher.CBC).iv.length);
+		assertEquals(12, EncryptionContext.create(KEY, EncryptionCipher.GCM).iv.length);
+	}
+
+	@Test
+	public void testCipherIsNotGuessed() throws Exception {
+		EncryptionContext ctx = EncryptionContext.create(KEY, EncryptionCipher.GCM);
+		String encrypted = RowEncrypt.encrypt("{}", KEY, ctx.iv, EncryptionCipher.GCM);
+
+		try {
+			RowEncrypt.decrypt(encrypted, KEY, Base64.encodeBase64String(ctx.iv));
+			fail("decrypted a GCM message as CBC");
+		} catch ( IllegalArgumentException e ) {
+		}
+	}
+
+	@Test
+	public void testGCMAuthenticates() throws Exception {
+		EncryptionContext ctx = EncryptionContext.create(KEY, EncryptionCipher.GCM);
+		byte[] encrypted = Base64.decodeBase64(RowEncrypt.encrypt("{\"id\":1}", KEY, ctx.iv, EncryptionCipher.GCM));
+		encrypted[0] ^= 1;
+
+		try {
+			RowEncrypt.decrypt(Base64.encodeBase64String(encrypted), KEY, Base64.encodeBase64String(ctx.iv), EncryptionCipher.GCM);
+			fail("decrypted a tampered GCM message");
+		} catch ( javax.crypto.AEADBadTagException e ) {
+		}
+	}
+
+	// what encrypting a row used to cost
+	private static String oldEncrypt(String plaintext) throws Exception {
+		byte[] iv = new byte[16];
+		SecureRandom.getInstance("SHA1PRNG").nextBytes(iv);
+		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5PADDING");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes("UTF-8"), "AES"), new IvParameterSpec(iv));
+		return Base64.encodeBase64String(cipher.doFinal(plaintext.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void testAllocationPerMessage() throws Exception {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		long thread = Thread.currentThread().getId();
+
+		String plaintext = plaintext(500);
+		byte[] bytes = plaintext.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+		int messages = 20000;
+
+		// warm up both paths
+		for ( int i = 0; i < messages; i++ ) {
+			oldEncrypt(plaintext);
+			writeEncrypted(plaintext, EncryptionContext.create(KEY, EncryptionCipher.GCM), out);
+		}
+
+		long start = threads.getThreadAllocatedBytes(thread), startNanos = System.nanoTime();
+		for ( int i = 0; i < messages; i++ )
+			oldEncrypt(new String(bytes, StandardCharsets.UTF_8));
+		long oldBytes = (threads.getThreadAllocatedBytes(thread) - start) / messages;
+		long oldNanos = (System.nanoTime() - startNanos) / messages;
+		System.out.println("per-row Cipher, CBC: " + oldBytes + " bytes/message, " + oldNanos + "ns/message");
+
+		for ( EncryptionCipher cipher : EncryptionCipher.values() ) {
+			JsonGenerator g = jsonFactory.createGenerator(out);
+			start = threads.getThreadAllocatedBytes(thread);
+			startNanos = System.nanoTime();
+			for ( int i = 0; i < messages; i++ ) {
+				out.reset();
+				RowEncrypt.writeEncrypted(g, bytes, 0, bytes.length, EncryptionContext.create(KEY, cipher));
+				g.flush();
+			}
+			long newBytes = (threads.getThreadAllocatedBytes(thread) - start) / messages;
+			long newNanos = (System.nanoTime() - startNanos) / messages;
+			System.out.println("writeEncrypted, " + cipher + ": " + newBytes + " bytes/message, " + newNanos + "ns/message");
+
+			if ( cipher == EncryptionCipher.CBC )
+				assertTrue(newBytes < oldBytes);
+		}
+	}
+}
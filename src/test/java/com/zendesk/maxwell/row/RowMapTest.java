@@ -0,0 +1,65 @@
+package com.zendesk.maxwell.row;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class RowMapTest {
+	private static final List<String> ID = Arrays.asList("id");
+
+	private static RowMap row() {
+		RowMap r = new RowMap("insert", "db", "tbl", 1000L, ID, null);
+		r.putData("id", 1);
+		r.putData("name", "a");
+		return r;
+	}
+
+	@Test
+	public void testKeysFollowPutsThroughGetData() throws Exception {
+		RowMap r = row();
+		assertEquals("1", r.pkAsConcatString());
+		assertEquals("1", r.buildPartitionKey(ID));
+
+		r.getData().put("id", 2);
+		assertEquals("2", r.pkAsConcatString());
+		assertEquals("2", r.buildPartitionKey(ID));
+
+		for ( Map.Entry<String, Object> e : r.getData().entrySet() ) {
+			if ( e.getKey().equals("id") )
+				e.setValue(3);
+		}
+		assertEquals(3, r.getData().get("id"));
+		assertEquals("3", r.pkAsConcatString());
+		assertEquals("3", r.buildPartitionKey(ID));
+	}
+
+	@Test
+	public void testKeysFollowRemovesThroughGetData() throws Exception {
+		RowMap r = row();
+		assertEquals("1", r.buildPartitionKey(ID));
+
+		Iterator<Map.Entry<String, Object>> it = r.getData().entrySet().iterator();
+		it.next();
+		it.remove();
+		assertEquals("None", r.pkAsConcatString());
+		assertEquals("", r.buildPartitionKey(ID));
+
+		r.getData().put("id", 4);
+		assertEquals("4", r.pkAsConcatString());
+
+		r.getData().remove("id");
+		assertEquals("None", r.pkAsConcatString());
+
+		r.getData().put("id", 5);
+		assertEquals("5", r.buildPartitionKey(ID));
+
+		r.getData().clear();
+		assertEquals(0, r.getData().size());
+		assertEquals("", r.buildPartitionKey(ID));
+	}
+}
@@ -0,0 +1,121 @@
+package com.zendesk.maxwell.schema.columndef;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/*
+	checks the epoch-micros fast paths against the Calendar code they replace.
+ */
+public class DateFormatterTest {
+	private static final long CUTOVER_MICROS = -12219292800000000L; // 1582-10-15 00:00:00 UTC
+	private static final long YEAR_10000_MICROS = 253402300800000000L;
+	private static final String[] ZONES = { "UTC", "America/Los_Angeles", "Asia/Kolkata", "Pacific/Chatham", "Asia/Shanghai" };
+
+	private static String pad(int val, int width) {
+		String s = String.valueOf(val);
+		while ( s.length() < width )
+			s = "0" + s;
+		return s;
+	}
+
+	private static String fraction(String value, int nanos, int precision) {
+		if ( precision == 0 )
+			return value;
+		return value + "." + pad(nanos / (int) Math.pow(10, 9 - precision), precision);
+	}
+
+	private static String calendarDate(long micros) {
+		return DateFormatter.formatDate(micros);
+	}
+
+	private static String calendarDateTime(long micros, int precision) {
+		Timestamp ts = DateFormatter.extractTimestamp(micros);
+		return fraction(DateFormatter.formatDateTime(micros, ts), ts.getNanos(), precision);
+	}
+
+	private static String calendarTime(long micros, int precision) {
+		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		cal.setTimeInMillis(micros / 1000);
+		String time = pad(cal.get(Calendar.HOUR_OF_DAY), 2) + ":"
+			+ pad(cal.get(Calendar.MINUTE), 2) + ":"
+			+ pad(cal.get(Calendar.SECOND), 2);
+		return fraction(time, (int) (micros % 1000000) * 1000, precision);
+	}
+
+	private static void check(long micros) {
+		assertEquals("date " + micros, calendarDate(micros), DateFormatter.formatDateMicros(micros));
+		for ( int precision = 0; precision <= 6; precision++ )
+			assertEquals("datetime(" + precision + ") " + micros,
+				calendarDateTime(micros, precision), DateFormatter.formatDateTimeMicros(micros, precision));
+	}
+
+	private static void checkTime(long micros) {
+		for ( int precision = 0; precision <= 6; precision++ ) {
+			assertEquals("time(" + precision + ") " + micros,
+				calendarTime(micros, precision), DateFormatter.formatTimeMicros(micros, precision));
+		}
+		assertEquals(calendarTime(micros, 0), DateFormatter.formatTime(micros / 1000));
+	}
+
+	@Test
+	public void testEdges() {
+		long[] edges = {
+			CUTOVER_MICROS, CUTOVER_MICROS + 1, CUTOVER_MICROS + 999999,
+			-86400000000L - 1, -1000001, -1000000, -999999, -500000, -1,
+			0, 1, 999999, 1000000, 86399999999L, 86400000000L,
+			951782400000000L,  // 2000-02-29
+			4107542399999999L, // 2100-02-28 23:59:59.999999
+			YEAR_10000_MICROS - 1
+		};
+
+		for ( long micros : edges )
+			check(micros);
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(1582);
+		for ( int i = 0; i < 200000; i++ ) {
+			long micros = CUTOVER_MICROS + (long) (random.nextDouble() * (YEAR_10000_MICROS - CUTOVER_MICROS));
+			check(micros);
+		}
+	}
+
+	@Test
+	public void testOutOfRange() {
+		assertNull(DateFormatter.formatDateMicros(CUTOVER_MICROS - 1));
+		assertNull(DateFormatter.formatDateTimeMicros(CUTOVER_MICROS - 1, 0));
+		assertNull(DateFormatter.formatDateMicros(YEAR_10000_MICROS));
+		assertNull(DateFormatter.formatDateTimeMicros(YEAR_10000_MICROS, 6));
+		assertNull(DateFormatter.formatDateTimeMicros(0, 7));
+		assertNull(DateFormatter.formatTimeMicros(-1, 0));
+		assertNull(DateFormatter.formatTimeMicros(0, 7));
+	}
+
+	@Test
+	public void testTimeIgnoresDefaultZone() {
+		TimeZone saved = TimeZone.getDefault();
+		Random random = new Random(86400);
+		try {
+			for ( String zone : ZONES ) {
+				TimeZone.setDefault(TimeZone.getTimeZone(zone));
+				for ( long micros : new long[] { 0, 1, 999999, 3599999999L, 43200000000L, 86399999999L } )
+					checkTime(micros);
+				for ( int i = 0; i < 10000; i++ )
+					checkTime((long) (random.nextDouble() * 86400000000L));
+
+				check(-1);
+				check(0);
+			}
+		} finally {
+			TimeZone.setDefault(saved);
+		}
+	}
+}